@@ -0,0 +1,85 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.SplittableRandom;
+
+import tictactoe.bench.Workload;
+
+/**
+ * The engine operations the benchmarks measure, called through
+ * {@link Workload} since the benchmarks can't refer to the default package.
+ */
+public class EngineWorkload implements Workload
+{
+    private TicTacToe game;
+    private SplittableRandom random;
+    private final BoardRenderer renderer = new BoardRenderer();
+
+    @Override
+    public void newGame(int boardSize, long seed)
+    {
+        this.game = new TicTacToe(boardSize);
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public void setUpWinningMove()
+    {
+        game.reset();
+        int boardSize = game.getBoardSize();
+        for(int column=1; column<boardSize; column++)
+        {
+            game.placeToken(Token.X, 1, column);
+            game.placeToken(Token.O, 2, column);
+        }
+    }
+
+    @Override
+    public int playRandomGame()
+    {
+        game.reset();
+        int boardSize = game.getBoardSize();
+        while(true)
+        {
+            Token token = game.getNextTurn();
+            int cell = MovePolicy.randomCell(game, random);
+            game.placeToken(token, cell / boardSize + 1, cell % boardSize + 1);
+            if(game.getWinner() != null || game.isBoardFull())
+                return game.getMoveCount();
+        }
+    }
+
+    @Override
+    public Object getNextTurn()
+    {
+        return game.getNextTurn();
+    }
+
+    @Override
+    public Object placeWinningToken()
+    {
+        game.placeToken(Token.X, 1, game.getBoardSize());
+        Token winner = game.getWinner();
+        game.undo();
+        return winner;
+    }
+
+    @Override
+    public boolean isBoardFull()
+    {
+        return game.isBoardFull();
+    }
+
+    @Override
+    public void displayBoard(PrintStream out)
+    {
+        try
+        {
+            renderer.render(game, out);
+        }
+        catch(IOException ioe)
+        {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+}
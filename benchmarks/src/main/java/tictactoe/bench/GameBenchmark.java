@@ -0,0 +1,96 @@
+package tictactoe.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the game engine hot paths at a range of board sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameBenchmark
+{
+    @Param({"3", "10", "100", "1000"})
+    int boardSize;
+
+    private Workload workload;
+
+    // Swallows the rendered board, so only the cost of rendering is measured
+    private final PrintStream nowhere = new PrintStream(new OutputStream()
+    {
+        @Override
+        public void write(int b)
+        {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+        }
+    });
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException
+    {
+        workload = (Workload)Class.forName("EngineWorkload").getDeclaredConstructor().newInstance();
+        workload.newGame(boardSize, 42);
+        workload.setUpWinningMove();
+    }
+
+    /**
+     * A whole game of random moves through placeToken.
+     */
+    @Benchmark
+    public int randomGame()
+    {
+        int moves = workload.playRandomGame();
+        workload.setUpWinningMove();
+        return moves;
+    }
+
+    @Benchmark
+    public Object getNextTurn()
+    {
+        return workload.getNextTurn();
+    }
+
+    /**
+     * Placing the token that completes a row, so the win check has to
+     * find the win, then taking it back.
+     */
+    @Benchmark
+    public Object placeWinningToken()
+    {
+        return workload.placeWinningToken();
+    }
+
+    @Benchmark
+    public boolean isBoardFull()
+    {
+        return workload.isBoardFull();
+    }
+
+    @Benchmark
+    public void displayBoard()
+    {
+        workload.displayBoard(nowhere);
+    }
+}
@@ -0,0 +1,33 @@
+package tictactoe.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the allocation profiler and writes the results
+ * as JSON, by default to baseline/results.json.
+ *
+ * Any standard JMH command line options can be given as well, for example
+ * a benchmark name pattern or {@code -p boardSize=3,10} to run a subset.
+ */
+public class RunBenchmarks
+{
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException
+    {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        options.addProfiler(GCProfiler.class);
+        if(!commandLine.getResult().hasValue())
+        {
+            options.resultFormat(ResultFormatType.JSON);
+            options.result("baseline/results.json");
+        }
+        new Runner(options.build()).run();
+    }
+}
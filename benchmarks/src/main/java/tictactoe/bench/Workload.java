@@ -0,0 +1,53 @@
+package tictactoe.bench;
+
+import java.io.PrintStream;
+
+/**
+ * The engine operations being measured.
+ *
+ * The game classes are in the default package, which code in a named package
+ * such as this one cannot refer to, and JMH refuses benchmarks in the default
+ * package. So the benchmarks call the engine through this interface, which
+ * {@code EngineWorkload} in the default package implements. There is only
+ * ever one implementation, so the JIT inlines the calls.
+ */
+public interface Workload
+{
+    /**
+     * Start a new game on an empty board of the given size.
+     */
+    void newGame(int boardSize, long seed);
+
+    /**
+     * Play X along the top row and O along the second, so that X placing
+     * a token in the top right square completes the top row.
+     */
+    void setUpWinningMove();
+
+    /**
+     * Play a whole game of random moves through the public API, checking
+     * for a winner and a full board after each move as the console does.
+     *
+     * @return Number of moves played.
+     */
+    int playRandomGame();
+
+    /**
+     * @return Whose turn it is.
+     */
+    Object getNextTurn();
+
+    /**
+     * Place the token that completes the top row, then take it back.
+     *
+     * @return The winner.
+     */
+    Object placeWinningToken();
+
+    boolean isBoardFull();
+
+    /**
+     * Print the whole board the way the console does.
+     */
+    void displayBoard(PrintStream out);
+}
@@ -0,0 +1,428 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks and scores many recorded games at once, one game per line:
+ *
+ * <pre>
+ * size[/winLength];row,column row,column ...
+ * </pre>
+ *
+ * Moves alternate between X and O, starting with X, and the win length
+ * defaults to the size. Each game gets one line back, in the order they
+ * came in:
+ *
+ * <pre>
+ * WIN X moves | WIN O moves   (the game was won, after that many moves)
+ * DRAW moves                  (the board is full, or no one can win any more)
+ * OPEN moves                  (the game is still going)
+ * ERR move message            (that move, counting from 1, is not allowed)
+ * </pre>
+ *
+ * Input is read in big chunks of whole lines, which worker threads take
+ * from a bounded queue and parse straight from the bytes, with no strings
+ * in between. Each worker replays its games on the same board while the
+ * rules stay the same. A second bounded queue holds the chunks in input
+ * order until their results are written, so reading never runs far ahead
+ * of writing.
+ */
+public class BatchRunner
+{
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_BOARD_SIZE = 1024;
+    private static final int TOO_BIG = 1_000_000_000; // stands in for any number too big to matter
+    private static final Chunk END = new Chunk(new byte[0], 0);
+
+    private final int threads;
+
+    /**
+     * @param threads Number of worker threads checking games.
+     */
+    public BatchRunner(int threads)
+    {
+        if(threads < 1)
+            throw new IllegalArgumentException("ERROR: There must be at least one thread.");
+        this.threads = threads;
+    }
+
+    /**
+     * Whole lines of input, and the results for them once they are ready.
+     */
+    private static class Chunk
+    {
+        final byte[] data;
+        final int length;
+        byte[] results;
+        int games;
+        Throwable failure;
+
+        Chunk(byte[] data, int length)
+        {
+            this.data = data;
+            this.length = length;
+        }
+
+        synchronized void finish(byte[] results, int games)
+        {
+            this.results = results;
+            this.games = games;
+            notifyAll();
+        }
+
+        synchronized void fail(Throwable failure)
+        {
+            this.failure = failure;
+            notifyAll();
+        }
+
+        /**
+         * Wait for the results to be ready.
+         *
+         * @throws RuntimeException or Error if checking the games failed.
+         */
+        synchronized byte[] awaitResults() throws InterruptedException
+        {
+            while(results == null && failure == null)
+                wait();
+            if(failure instanceof Error)
+                throw (Error)failure;
+            if(failure != null)
+                throw (RuntimeException)failure;
+            return results;
+        }
+    }
+
+    /**
+     * Check every game in the input and write a result line for each.
+     *
+     * @return The number of games checked.
+     */
+    public long run(ReadableByteChannel in, WritableByteChannel out) throws IOException, InterruptedException
+    {
+        BlockingQueue<Chunk> work = new ArrayBlockingQueue<Chunk>(2 * threads);
+        BlockingQueue<Chunk> pending = new ArrayBlockingQueue<Chunk>(4 * threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1, runnable -> {
+            Thread thread = new Thread(runnable, "batch-runner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try
+        {
+            Future<?> reader = pool.submit(() -> {
+                try
+                {
+                    read(in, work, pending);
+                }
+                finally
+                {
+                    pending.put(END);
+                    work.put(END);
+                }
+                return null;
+            });
+            for(int i=0; i<threads; i++)
+                pool.submit(new Worker(work));
+
+            long games = 0;
+            for(Chunk chunk = pending.take(); chunk != END; chunk = pending.take())
+            {
+                byte[] results = chunk.awaitResults();
+                ByteBuffer buffer = ByteBuffer.wrap(results);
+                while(buffer.hasRemaining())
+                    out.write(buffer);
+                games += chunk.games;
+            }
+            reader.get();
+            return games;
+        }
+        catch(ExecutionException ee)
+        {
+            if(ee.getCause() instanceof IOException)
+                throw (IOException)ee.getCause();
+            throw new IllegalStateException(ee.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Read the input into chunks of whole lines and queue them for the
+     * workers and for writing out.
+     */
+    private static void read(ReadableByteChannel in, BlockingQueue<Chunk> work, BlockingQueue<Chunk> pending)
+            throws IOException, InterruptedException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        while(true)
+        {
+            int read = in.read(buffer);
+            if(read < 0)
+                break;
+            if(buffer.hasRemaining())
+                continue;
+
+            int lines = lastLineEnd(buffer.array(), buffer.position());
+            if(lines == 0)
+            {
+                // A line longer than the buffer
+                int length = buffer.position();
+                buffer = ByteBuffer.wrap(Arrays.copyOf(buffer.array(), buffer.capacity() * 2));
+                buffer.position(length);
+                continue;
+            }
+
+            // The next chunk starts with the end of the last line
+            ByteBuffer next = ByteBuffer.allocate(Math.max(CHUNK_SIZE, buffer.position() - lines));
+            next.put(buffer.array(), lines, buffer.position() - lines);
+            queue(new Chunk(buffer.array(), lines), work, pending);
+            buffer = next;
+        }
+        if(buffer.position() > 0)
+            queue(new Chunk(buffer.array(), buffer.position()), work, pending);
+    }
+
+    /**
+     * @return Length of the data up to and including its last newline,
+     *         or 0 if there is none.
+     */
+    private static int lastLineEnd(byte[] data, int length)
+    {
+        for(int i=length-1; i>=0; i--)
+        {
+            if(data[i] == '\n')
+                return i + 1;
+        }
+        return 0;
+    }
+
+    private static void queue(Chunk chunk, BlockingQueue<Chunk> work, BlockingQueue<Chunk> pending)
+            throws InterruptedException
+    {
+        pending.put(chunk);
+        work.put(chunk);
+    }
+
+    /**
+     * Checks chunks of games until there are no more.
+     */
+    private static class Worker implements Runnable
+    {
+        private final BlockingQueue<Chunk> work;
+        private TicTacToe game;
+        private int[] cells = new int[64];
+        private byte[] results = new byte[4096];
+        private int resultLength;
+        private byte[] data; // line being parsed, from position up to end
+        private int position;
+        private int end;
+
+        Worker(BlockingQueue<Chunk> work)
+        {
+            this.work = work;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                for(Chunk chunk = work.take(); chunk != END; chunk = work.take())
+                {
+                    try
+                    {
+                        check(chunk);
+                    }
+                    catch(Throwable t)
+                    {
+                        // Whatever went wrong, the writer must not wait forever
+                        chunk.fail(t);
+                    }
+                }
+                work.put(END); // for the other workers
+            }
+            catch(InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Check every game in a chunk.
+         */
+        private void check(Chunk chunk)
+        {
+            resultLength = 0;
+            data = chunk.data;
+            int games = 0;
+            for(int start=0; start<chunk.length; games++)
+            {
+                int newline = start;
+                while(newline < chunk.length && data[newline] != '\n')
+                    newline++;
+                position = start;
+                end = newline > start && data[newline-1] == '\r' ? newline-1 : newline;
+                check();
+                start = newline + 1;
+            }
+            chunk.finish(Arrays.copyOf(results, resultLength), games);
+        }
+
+        /**
+         * Check the game on the current line and add its result.
+         */
+        private void check()
+        {
+            // Rules
+            skipSpaces();
+            int size = number();
+            int winLength = size;
+            skipSpaces();
+            if(accept('/'))
+            {
+                skipSpaces();
+                winLength = number();
+                skipSpaces();
+            }
+            if(!accept(';') || size < 1 || size > MAX_BOARD_SIZE || winLength < 1 || winLength > size)
+            {
+                error(0, String.format("ERROR: Expecting size;row,column row,column ... with a size from 1 to %d.",
+                        MAX_BOARD_SIZE));
+                return;
+            }
+
+            // Moves, up to the first that can't be read
+            int count = 0;
+            boolean unreadable = false;
+            while(true)
+            {
+                skipSpaces();
+                if(position == end)
+                    break;
+                int row = number();
+                skipSpaces();
+                boolean comma = accept(',');
+                skipSpaces();
+                int column = number();
+                if(row < 0 || !comma || column < 0)
+                {
+                    unreadable = true;
+                    break;
+                }
+                if(count == cells.length)
+                    cells = Arrays.copyOf(cells, count * 2);
+                boolean onBoard = row >= 1 && row <= size && column >= 1 && column <= size;
+                cells[count++] = onBoard ? (row-1)*size + column-1 : -1;
+            }
+
+            if(game != null && game.getBoardSize() == size && game.getWinLength() == winLength)
+                game.reset();
+            else
+                game = new TicTacToe(size, winLength);
+            int status = game.applyMoves(cells, count);
+            if(!MoveStatus.isPlayed(status))
+                error(game.getMoveCount() + 1, MoveStatus.message(status, null, size));
+            else if(unreadable)
+                error(count + 1, "ERROR: Expecting row,column such as 1,2.");
+            else if(game.getWinner() != null)
+                result(game.getWinner() == Token.X ? "WIN X " : "WIN O ", game.getMoveCount());
+            else if(game.isBoardFull() || game.isDrawForced())
+                result("DRAW ", game.getMoveCount());
+            else
+                result("OPEN ", game.getMoveCount());
+        }
+
+        private void skipSpaces()
+        {
+            while(position < end && (data[position] == ' ' || data[position] == '\t'))
+                position++;
+        }
+
+        private boolean accept(char c)
+        {
+            if(position < end && data[position] == c)
+            {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Read an unsigned number.
+         *
+         * @return The number, {@link #TOO_BIG} if it is at least that, or -1
+         *         if there is no number.
+         */
+        private int number()
+        {
+            int start = position;
+            int value = 0;
+            while(position < end && data[position] >= '0' && data[position] <= '9')
+            {
+                int digit = data[position++] - '0';
+                value = value >= TOO_BIG / 10 ? TOO_BIG : value*10 + digit;
+            }
+            return position == start ? -1 : value;
+        }
+
+        private void result(String outcome, int moves)
+        {
+            append(outcome);
+            append(moves);
+            append("\n");
+        }
+
+        private void error(int move, String message)
+        {
+            append("ERR ");
+            append(move);
+            append(" ");
+            append(message);
+            append("\n");
+        }
+
+        private void append(String text)
+        {
+            ensureRoom(text.length());
+            for(int i=0; i<text.length(); i++)
+                results[resultLength++] = (byte)text.charAt(i);
+        }
+
+        private void append(int value)
+        {
+            ensureRoom(10);
+            int start = resultLength;
+            do
+            {
+                results[resultLength++] = (byte)('0' + value % 10);
+                value /= 10;
+            }
+            while(value > 0);
+
+            // The digits came out backwards
+            for(int i=start, j=resultLength-1; i<j; i++, j--)
+            {
+                byte digit = results[i];
+                results[i] = results[j];
+                results[j] = digit;
+            }
+        }
+
+        private void ensureRoom(int length)
+        {
+            if(resultLength + length > results.length)
+                results = Arrays.copyOf(results, Math.max(results.length * 2, resultLength + length));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class BatchRunnerTest
+{
+    @Test
+    public void testResults()
+    throws Exception
+    {
+        assertEquals("WIN X 5\nDRAW 9\nOPEN 3\nDRAW 8\n",
+                run("3;1,1 2,1 1,2 2,2 1,3\n"
+                        + "3;2,2 1,1 1,2 3,2 2,1 2,3 1,3 3,1 3,3\r\n"
+                        + "5/3; 3,2 1,1 3,3\n"
+                        + "3;1,2 3,2 2,3 2,1 3,1 1,3 1,1 3,3", 2));
+    }
+
+    @Test
+    public void testErrors()
+    throws Exception
+    {
+        assertEquals("ERR 2 ERROR: Square already occupied.\n"
+                + "ERR 6 ERROR: This game is over already.\n"
+                + "ERR 2 ERROR: Expecting row,column such as 1,2.\n"
+                + "ERR 0 ERROR: Expecting size;row,column row,column ... with a size from 1 to 1024.\n"
+                + "ERR 0 ERROR: Expecting size;row,column row,column ... with a size from 1 to 1024.\n",
+                run("3;1,1 1,1\n"
+                        + "3;1,1 2,1 1,2 2,2 1,3 3,3\n"
+                        + "3;1,1 2\n"
+                        + "0;\n"
+                        + "3/4;", 2));
+    }
+
+    @Test
+    public void testOrder()
+    throws Exception
+    {
+        // Enough games for many chunks come back in order
+        SplittableRandom random = new SplittableRandom(5);
+        StringBuilder games = new StringBuilder();
+        for(int i=0; i<100000; i++)
+        {
+            int size = 3 + random.nextInt(3);
+            games.append(size).append(';');
+            for(int move=random.nextInt(size*size + 2); move>0; move--)
+                games.append(1 + random.nextInt(size)).append(',').append(1 + random.nextInt(size)).append(' ');
+            games.append('\n');
+        }
+        String expected = run(games.toString(), 1);
+        assertEquals(100000, expected.split("\n").length);
+        assertEquals(expected, run(games.toString(), 4));
+    }
+
+    @Test
+    public void testLongLine()
+    throws Exception
+    {
+        // A game longer than a chunk; X fills the first column last
+        StringBuilder longGame = new StringBuilder("300;");
+        for(int cell=0; cell<299*300+1; cell++)
+            longGame.append(cell / 300 + 1).append(',').append(cell % 300 + 1).append(' ');
+        assertEquals("OPEN 0\nWIN X 89701\n", run("3;\n" + longGame, 2));
+    }
+
+    private static String run(String games, int threads)
+    throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BatchRunner(threads).run(Channels.newChannel(new ByteArrayInputStream(games.getBytes(StandardCharsets.US_ASCII))),
+                Channels.newChannel(out));
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,156 @@
+import java.util.Arrays;
+
+/**
+ * Board storage packed into two bitsets, one for X and one for O.
+ *
+ * A 3x3 board fits in a single long per token, and even a 1000x1000
+ * board takes only about 250KB. Copying a board is a plain array copy.
+ * An optional byte-per-cell view can be kept alongside the bitsets for
+ * callers that want to read the whole board as an array.
+ */
+public class BitBoard implements Board
+{
+    final int size;
+    final long[] xBits;
+    final long[] oBits;
+    byte[] cells; // optional byte-per-cell view, null if not kept
+    int occupied;
+
+    /**
+     * Create an empty board without a cell view.
+     *
+     * @param size Size of the board (number of rows/columns)
+     */
+    public BitBoard(int size)
+    {
+        this(size, false);
+    }
+
+    /**
+     * Create an empty board.
+     *
+     * @param size Size of the board (number of rows/columns)
+     * @param keepCellView True to keep a byte-per-cell view up to date
+     *        with every change, so {@link #getCells()} never has to build one.
+     */
+    public BitBoard(int size, boolean keepCellView)
+    {
+        int words = (size*size + 63) >>> 6;
+        this.size = size;
+        this.xBits = new long[words];
+        this.oBits = new long[words];
+        if(keepCellView)
+            this.cells = new byte[size*size];
+    }
+
+    private BitBoard(BitBoard other)
+    {
+        this.size = other.size;
+        this.xBits = other.xBits.clone();
+        this.oBits = other.oBits.clone();
+        this.cells = other.cells == null ? null : other.cells.clone();
+        this.occupied = other.occupied;
+    }
+
+    @Override
+    public int getSize()
+    {
+        return size;
+    }
+
+    @Override
+    public Token get(int cell)
+    {
+        long mask = 1L << cell;
+        int word = cell >>> 6;
+        if((xBits[word] & mask) != 0)
+            return Token.X;
+        if((oBits[word] & mask) != 0)
+            return Token.O;
+        return null;
+    }
+
+    @Override
+    public void set(int cell, Token token)
+    {
+        clear(cell);
+        long mask = 1L << cell;
+        int word = cell >>> 6;
+        if(token == Token.X)
+            xBits[word] |= mask;
+        else
+            oBits[word] |= mask;
+        if(cells != null)
+            cells[cell] = token == Token.X ? X : O;
+        occupied++;
+    }
+
+    @Override
+    public void clear(int cell)
+    {
+        long mask = 1L << cell;
+        int word = cell >>> 6;
+        if(((xBits[word] | oBits[word]) & mask) == 0)
+            return;
+        xBits[word] &= ~mask;
+        oBits[word] &= ~mask;
+        if(cells != null)
+            cells[cell] = EMPTY;
+        occupied--;
+    }
+
+    @Override
+    public int getOccupiedCount()
+    {
+        return occupied;
+    }
+
+    @Override
+    public byte[] getCells()
+    {
+        if(cells != null)
+            return cells;
+
+        byte[] view = new byte[size*size];
+        for(int word=0; word<xBits.length; word++)
+        {
+            fill(view, word, xBits[word], X);
+            fill(view, word, oBits[word], O);
+        }
+        return view;
+    }
+
+    private static void fill(byte[] view, int word, long bits, byte value)
+    {
+        while(bits != 0)
+        {
+            view[(word << 6) + Long.numberOfTrailingZeros(bits)] = value;
+            bits &= bits - 1;
+        }
+    }
+
+    @Override
+    public BitBoard copy()
+    {
+        return new BitBoard(this);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if(obj == null)
+            return false;
+        if(obj.getClass()!=BitBoard.class)
+            return false;
+
+        BitBoard other = (BitBoard)obj;
+        return this.size==other.size && Arrays.equals(this.xBits, other.xBits)
+                && Arrays.equals(this.oBits, other.oBits);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * Arrays.hashCode(xBits) + Arrays.hashCode(oBits);
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Storage for the tokens on a square game board.
+ *
+ * Cells are addressed by index, row by row from the top left corner,
+ * so the square at (row, column) is cell (row-1)*size + (column-1).
+ */
+public interface Board
+{
+    /** Cell value used by {@link #getCells()} for an empty square. */
+    byte EMPTY = 0;
+    /** Cell value used by {@link #getCells()} for a square holding X. */
+    byte X = 1;
+    /** Cell value used by {@link #getCells()} for a square holding O. */
+    byte O = 2;
+
+    /**
+     * Gets the number of rows or columns of this board.
+     */
+    int getSize();
+
+    /**
+     * Gets the token in the specified cell.
+     *
+     * @return The token, or null if the cell is empty.
+     */
+    Token get(int cell);
+
+    /**
+     * Puts a token in the specified cell, replacing whatever was there.
+     */
+    void set(int cell, Token token);
+
+    /**
+     * Empties the specified cell.
+     */
+    void clear(int cell);
+
+    /**
+     * Gets the number of cells holding a token.
+     */
+    int getOccupiedCount();
+
+    /**
+     * Gets the board as one byte per cell, using {@link #EMPTY},
+     * {@link #X} and {@link #O}. The returned array must not be modified.
+     */
+    byte[] getCells();
+
+    /**
+     * Creates an independent copy of this board.
+     */
+    Board copy();
+}
@@ -0,0 +1,113 @@
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only {@link Map} view of a {@link Board}, keyed by {@link Square}.
+ *
+ * The view is live: it always reflects the current contents of the board.
+ * Lookups go straight to the board; iteration visits the occupied squares
+ * row by row.
+ */
+class BoardMapView extends AbstractMap<Square, Token>
+{
+    private final Board board;
+    private Set<Map.Entry<Square, Token>> entrySet;
+
+    BoardMapView(Board board)
+    {
+        this.board = board;
+    }
+
+    @Override
+    public Token get(Object key)
+    {
+        int cell = cellOf(key);
+        return cell < 0 ? null : board.get(cell);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size()
+    {
+        return board.getOccupiedCount();
+    }
+
+    @Override
+    public Set<Map.Entry<Square, Token>> entrySet()
+    {
+        if(entrySet == null)
+            entrySet = new EntrySet();
+        return entrySet;
+    }
+
+    /**
+     * Gets the cell index of a square, or -1 if the key is not a square
+     * on this board.
+     */
+    private int cellOf(Object key)
+    {
+        if(!(key instanceof Square))
+            return -1;
+
+        Square square = (Square)key;
+        int size = board.getSize();
+        if(square.getRow() < 1 || square.getRow() > size
+                || square.getColumn() < 1 || square.getColumn() > size)
+            return -1;
+        return (square.getRow()-1)*size + square.getColumn()-1;
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<Square, Token>>
+    {
+        @Override
+        public int size()
+        {
+            return board.getOccupiedCount();
+        }
+
+        @Override
+        public Iterator<Map.Entry<Square, Token>> iterator()
+        {
+            return new Iterator<Map.Entry<Square, Token>>()
+            {
+                private final int cellCount = board.getSize()*board.getSize();
+                private int next = advance(0);
+
+                private int advance(int cell)
+                {
+                    while(cell < cellCount && board.get(cell) == null)
+                        cell++;
+                    return cell;
+                }
+
+                @Override
+                public boolean hasNext()
+                {
+                    return next < cellCount;
+                }
+
+                @Override
+                public Map.Entry<Square, Token> next()
+                {
+                    if(!hasNext())
+                        throw new NoSuchElementException();
+
+                    int cell = next;
+                    next = advance(cell+1);
+                    int size = board.getSize();
+                    Square square = Square.of(cell/size + 1, cell%size + 1);
+                    return new AbstractMap.SimpleImmutableEntry<Square, Token>(square, board.get(cell));
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Turns a game board into text, the way the console shows it: one row per
+ * line, each square as X, O or ~ followed by a space.
+ *
+ * Each frame is built in a buffer that is kept from one frame to the next
+ * and written out with a single call, rather than formatting and printing
+ * square by square. For big boards there are two cheaper alternatives to
+ * the full frame: only the squares that changed since the last frame, or
+ * only the part of the board around the last move.
+ *
+ * A renderer keeps state between frames, so use one per game on one thread.
+ */
+public class BoardRenderer
+{
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte EMPTY = '~';
+
+    private byte[] buffer = new byte[256];
+    private int length;
+    private byte[] shown; // what each square showed in the last full or diff frame
+
+    /**
+     * Write the whole board.
+     */
+    public void render(TicTacToe game, OutputStream out) throws IOException
+    {
+        int size = game.getBoardSize();
+        length = 0;
+        ensureCapacity(size * (2*size + NEWLINE.length));
+        for(int row=1; row<=size; row++)
+            appendRow(game, row, 1, size);
+        remember(game);
+        write(out);
+    }
+
+    /**
+     * Write only the squares that changed since the last full or diff frame,
+     * one per line as "row,column X". Squares emptied by undoing moves show
+     * as ~. The first frame of a game lists every occupied square.
+     */
+    public void renderChanges(TicTacToe game, OutputStream out) throws IOException
+    {
+        int size = game.getBoardSize();
+        if(shown == null || shown.length != size*size)
+        {
+            shown = new byte[size*size];
+            Arrays.fill(shown, EMPTY);
+        }
+
+        length = 0;
+        Board board = game.getBoard();
+        for(int cell=0; cell<shown.length; cell++)
+        {
+            byte symbol = symbol(board.get(cell));
+            if(symbol == shown[cell])
+                continue;
+            shown[cell] = symbol;
+            ensureCapacity(length + 32);
+            appendNumber(cell / size + 1);
+            buffer[length++] = ',';
+            appendNumber(cell % size + 1);
+            buffer[length++] = ' ';
+            buffer[length++] = symbol;
+            appendNewline();
+        }
+        write(out);
+    }
+
+    /**
+     * Write only the part of the board within the given number of rows and
+     * columns of the last move, under a line saying which part it is. Before
+     * the first move, shows the top left corner.
+     */
+    public void renderViewport(TicTacToe game, int radius, OutputStream out) throws IOException
+    {
+        int size = game.getBoardSize();
+        Square center = game.getLastMove();
+        int centerRow = center == null ? 1 : center.getRow();
+        int centerColumn = center == null ? 1 : center.getColumn();
+        int firstRow = Math.max(1, centerRow - radius);
+        int lastRow = Math.min(size, centerRow + radius);
+        int firstColumn = Math.max(1, centerColumn - radius);
+        int lastColumn = Math.min(size, centerColumn + radius);
+
+        length = 0;
+        ensureCapacity(64 + (lastRow - firstRow + 1) * (2*(lastColumn - firstColumn + 1) + NEWLINE.length));
+        appendText("Rows ");
+        appendNumber(firstRow);
+        appendText("-");
+        appendNumber(lastRow);
+        appendText(", columns ");
+        appendNumber(firstColumn);
+        appendText("-");
+        appendNumber(lastColumn);
+        appendNewline();
+        for(int row=firstRow; row<=lastRow; row++)
+            appendRow(game, row, firstColumn, lastColumn);
+        write(out);
+    }
+
+    private void appendRow(TicTacToe game, int row, int firstColumn, int lastColumn)
+    {
+        Board board = game.getBoard();
+        int cell = (row-1)*game.getBoardSize() + firstColumn-1;
+        for(int column=firstColumn; column<=lastColumn; column++, cell++)
+        {
+            buffer[length++] = symbol(board.get(cell));
+            buffer[length++] = ' ';
+        }
+        appendNewline();
+    }
+
+    private void remember(TicTacToe game)
+    {
+        Board board = game.getBoard();
+        int cellCount = game.getBoardSize()*game.getBoardSize();
+        if(shown == null || shown.length != cellCount)
+            shown = new byte[cellCount];
+        for(int cell=0; cell<cellCount; cell++)
+            shown[cell] = symbol(board.get(cell));
+    }
+
+    private static byte symbol(Token token)
+    {
+        return token == null ? EMPTY : token == Token.X ? (byte)'X' : (byte)'O';
+    }
+
+    private void appendNumber(int number)
+    {
+        int start = length;
+        do
+        {
+            buffer[length++] = (byte)('0' + number % 10);
+            number /= 10;
+        }
+        while(number > 0);
+
+        // Digits went in backwards
+        for(int i=start, j=length-1; i<j; i++, j--)
+        {
+            byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+    }
+
+    private void appendText(String text)
+    {
+        for(int i=0; i<text.length(); i++)
+            buffer[length++] = (byte)text.charAt(i);
+    }
+
+    private void appendNewline()
+    {
+        System.arraycopy(NEWLINE, 0, buffer, length, NEWLINE.length);
+        length += NEWLINE.length;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if(buffer.length < capacity)
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+    }
+
+    private void write(OutputStream out) throws IOException
+    {
+        out.write(buffer, 0, length);
+        out.flush();
+    }
+}
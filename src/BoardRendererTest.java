@@ -0,0 +1,65 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+public class BoardRendererTest
+{
+    private static final String NL = System.lineSeparator();
+    
+    @Test
+    public void testRender()
+    throws Exception
+    {
+        TicTacToe game = new TicTacToe();
+        game.placeToken(Token.X, 1, 1);
+        game.placeToken(Token.O, 2, 3);
+        BoardRenderer renderer = new BoardRenderer();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer.render(game, out);
+        assertEquals("X ~ ~ " + NL + "~ ~ O " + NL + "~ ~ ~ " + NL, out.toString("US-ASCII"));
+    }
+    
+    @Test
+    public void testRenderChanges()
+    throws Exception
+    {
+        TicTacToe game = new TicTacToe(12);
+        BoardRenderer renderer = new BoardRenderer();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        game.placeToken(Token.X, 1, 1);
+        renderer.renderChanges(game, out);
+        assertEquals("1,1 X" + NL, out.toString("US-ASCII"));
+        
+        out.reset();
+        game.placeToken(Token.O, 12, 10);
+        game.placeToken(Token.X, 5, 5);
+        renderer.renderChanges(game, out);
+        assertEquals("5,5 X" + NL + "12,10 O" + NL, out.toString("US-ASCII"));
+        
+        out.reset();
+        game.undo();
+        renderer.renderChanges(game, out);
+        assertEquals("5,5 ~" + NL, out.toString("US-ASCII"));
+        
+        out.reset();
+        renderer.renderChanges(game, out);
+        assertEquals("", out.toString("US-ASCII"));
+    }
+    
+    @Test
+    public void testRenderViewport()
+    throws Exception
+    {
+        TicTacToe game = new TicTacToe(100);
+        game.placeToken(Token.X, 50, 99);
+        BoardRenderer renderer = new BoardRenderer();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer.renderViewport(game, 1, out);
+        assertEquals("Rows 49-51, columns 98-100" + NL
+                + "~ ~ ~ " + NL
+                + "~ X ~ " + NL
+                + "~ ~ ~ " + NL, out.toString("US-ASCII"));
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * A picture of a game at one moment, which never changes once taken.
+ *
+ * A game publishes a new snapshot after every move, so other threads can
+ * look at a consistent board at any time without locking or holding up the
+ * players. The tokens are kept as bitsets split into chunks of 4096 squares.
+ * Each snapshot copies only the chunk the move touched and shares the rest
+ * with the snapshot before it, so publishing costs little even on big boards.
+ */
+public final class BoardSnapshot
+{
+    private static final int CHUNK_BITS = 12; // squares per chunk, as a power of two
+    private static final int CHUNK_WORDS = 1 << (CHUNK_BITS - 6);
+
+    private final int size;
+    private final long[][] xChunks;
+    private final long[][] oChunks;
+    private final int moveCount;
+    private final int lastCell; // -1 before the first move
+    private final Token winner;
+
+    private BoardSnapshot(int size, long[][] xChunks, long[][] oChunks, int moveCount, int lastCell, Token winner)
+    {
+        this.size = size;
+        this.xChunks = xChunks;
+        this.oChunks = oChunks;
+        this.moveCount = moveCount;
+        this.lastCell = lastCell;
+        this.winner = winner;
+    }
+
+    /**
+     * Gets a snapshot of an empty board.
+     */
+    static BoardSnapshot empty(int size)
+    {
+        int words = (size*size + 63) >>> 6;
+        int chunks = (words + CHUNK_WORDS - 1) / CHUNK_WORDS;
+        long[][] xChunks = new long[chunks][];
+        long[][] oChunks = new long[chunks][];
+        for(int i=0; i<chunks; i++)
+        {
+            // Empty chunks hold nothing, so both tokens can share them
+            long[] chunk = new long[Math.min(CHUNK_WORDS, words - i*CHUNK_WORDS)];
+            xChunks[i] = chunk;
+            oChunks[i] = chunk;
+        }
+        return new BoardSnapshot(size, xChunks, oChunks, 0, -1, null);
+    }
+
+    /**
+     * Gets a snapshot of a game from scratch.
+     */
+    static BoardSnapshot of(TicTacToe game)
+    {
+        BoardSnapshot empty = empty(game.boardSize);
+        long[][] xChunks = empty.xChunks;
+        long[][] oChunks = new long[xChunks.length][];
+        for(int i=0; i<xChunks.length; i++)
+            oChunks[i] = xChunks[i].clone();
+        for(int ply=0; ply<game.moveCount; ply++)
+        {
+            int cell = game.moves[ply];
+            long[][] chunks = ply % 2 == 0 ? xChunks : oChunks;
+            chunks[cell >>> CHUNK_BITS][(cell >>> 6) & (CHUNK_WORDS - 1)] |= 1L << cell;
+        }
+        int lastCell = game.moveCount == 0 ? -1 : game.moves[game.moveCount-1];
+        return new BoardSnapshot(game.boardSize, xChunks, oChunks, game.moveCount, lastCell, game.winner);
+    }
+
+    /**
+     * Gets a snapshot of a game after one cell has changed.
+     *
+     * @param cell The cell that was played or taken back.
+     * @param game The game as it is now.
+     */
+    BoardSnapshot change(int cell, TicTacToe game)
+    {
+        Token token = game.board.get(cell);
+        long[][] xChunks = this.xChunks;
+        long[][] oChunks = this.oChunks;
+        if(token == Token.X || get(cell) == Token.X)
+            xChunks = flip(xChunks, cell);
+        else
+            oChunks = flip(oChunks, cell);
+
+        int lastCell = game.moveCount == 0 ? -1 : game.moves[game.moveCount-1];
+        return new BoardSnapshot(size, xChunks, oChunks, game.moveCount, lastCell, game.winner);
+    }
+
+    /**
+     * Copy the chunk holding a cell with that cell's bit flipped, and the
+     * list of chunks to point at the copy.
+     */
+    private static long[][] flip(long[][] chunks, int cell)
+    {
+        int chunk = cell >>> CHUNK_BITS;
+        long[][] copy = chunks.clone();
+        copy[chunk] = chunks[chunk].clone();
+        copy[chunk][(cell >>> 6) & (CHUNK_WORDS - 1)] ^= 1L << cell;
+        return copy;
+    }
+
+    private static boolean isSet(long[][] chunks, int cell)
+    {
+        return (chunks[cell >>> CHUNK_BITS][(cell >>> 6) & (CHUNK_WORDS - 1)] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Gets the number of rows or columns of the board.
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the token in a cell: (row-1)*size + (column-1).
+     *
+     * @return The token, or null if the cell is empty.
+     */
+    public Token get(int cell)
+    {
+        if(isSet(xChunks, cell))
+            return Token.X;
+        if(isSet(oChunks, cell))
+            return Token.O;
+        return null;
+    }
+
+    /**
+     * Gets the token on the specified square.
+     *
+     * @param row Row number of the square, from 1 to the board size.
+     * @param column Column number of the square, from 1 to the board size.
+     * @return The token, or null if the square is empty.
+     */
+    public Token getToken(int row, int column)
+    {
+        return get((row-1)*size + column-1);
+    }
+
+    /**
+     * Gets the number of moves played.
+     */
+    public int getMoveCount()
+    {
+        return moveCount;
+    }
+
+    /**
+     * Gets the last square that was played.
+     *
+     * @return The square, or null if no one had played yet.
+     */
+    public Square getLastMove()
+    {
+        return lastCell < 0 ? null : Square.of(lastCell / size + 1, lastCell % size + 1);
+    }
+
+    /**
+     * @return The winning token, or null if no one had won.
+     */
+    public Token getWinner()
+    {
+        return winner;
+    }
+
+    /**
+     * Determine whether the game was over: won, or the board full.
+     */
+    public boolean isGameOver()
+    {
+        return winner != null || moveCount == size*size;
+    }
+
+    /**
+     * Determine which token had the next turn.
+     *
+     * @return The token, or null if the game was over.
+     */
+    public Token getNextTurn()
+    {
+        if(isGameOver())
+            return null;
+        return moveCount % 2 == 0 ? Token.X : Token.O;
+    }
+}
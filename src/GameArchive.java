@@ -0,0 +1,155 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * An append-only file of {@link GameRecord game records}.
+ *
+ * Games are added to the end of the file in batches, so saving one is
+ * usually just encoding it into memory. Reading the archive back maps the
+ * file into memory and plays each record out straight from the mapping, one
+ * game after another, without copying the file or parsing any text. The file
+ * starts with a short header saying what it is, followed by the records.
+ *
+ * Adding games is safe from several threads at once; replaying sees every
+ * game added before it started.
+ */
+public class GameArchive implements Closeable
+{
+    private static final byte[] HEADER = { 'T', 'T', 'T', 'A', 1 };
+    private static final int BATCH_SIZE = 64 * 1024;
+    private static final long WINDOW_SIZE = 1L << 30; // most of the file mapped at once
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_SIZE);
+
+    /**
+     * Open an archive, creating the file if there is none.
+     */
+    public GameArchive(Path file) throws IOException
+    {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if(channel.size() == 0)
+        {
+            batch.put(HEADER);
+            flush();
+        }
+    }
+
+    /**
+     * Add a game to the end of the archive. It may stay in memory until
+     * the next {@link #flush()}.
+     */
+    public synchronized void add(TicTacToe game) throws IOException
+    {
+        int length = GameRecord.encodedLength(game);
+        if(length > batch.remaining())
+        {
+            flush();
+            if(length > batch.capacity())
+            {
+                // Too big to batch, so write it on its own
+                ByteBuffer record = ByteBuffer.allocate(length);
+                GameRecord.write(game, record);
+                record.flip();
+                writeFully(record);
+                return;
+            }
+        }
+        GameRecord.write(game, batch);
+    }
+
+    /**
+     * Write out any games still held in memory.
+     */
+    public synchronized void flush() throws IOException
+    {
+        batch.flip();
+        writeFully(batch);
+        batch.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException
+    {
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * Play out every game in the archive, in the order they were added.
+     *
+     * To avoid allocating for every game, the same game object is handed
+     * to the consumer each time while the rules stay the same, so it is
+     * only good until the consumer returns. Copy it to keep it.
+     *
+     * @return The number of games replayed.
+     * @throws IllegalStateException if the file is not an archive, or holds
+     *         a record that is not a legal game.
+     */
+    public long replay(Consumer<TicTacToe> consumer) throws IOException
+    {
+        long end;
+        synchronized(this)
+        {
+            flush();
+            end = channel.size();
+        }
+
+        long games = 0;
+        try(FileChannel reader = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            checkHeader(reader, end);
+            TicTacToe game = null;
+            long offset = HEADER.length;
+            while(offset < end)
+            {
+                MappedByteBuffer window = reader.map(FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min(WINDOW_SIZE, end - offset));
+                while(GameRecord.hasRecord(window))
+                {
+                    game = GameRecord.read(window, game);
+                    consumer.accept(game);
+                    games++;
+                }
+
+                // Map again from the first record that didn't fit whole
+                if(window.position() == 0)
+                    throw new IllegalStateException(
+                            String.format("ERROR: Incomplete game record at byte %d of the archive.", offset));
+                offset += window.position();
+            }
+        }
+        return games;
+    }
+
+    private static void checkHeader(FileChannel reader, long end) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER.length);
+        while(header.hasRemaining() && reader.read(header, header.position()) > 0)
+            ;
+        header.flip();
+        if(end < HEADER.length || !header.equals(ByteBuffer.wrap(HEADER)))
+            throw new IllegalStateException("ERROR: Not a game archive.");
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+}
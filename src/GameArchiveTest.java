@@ -0,0 +1,318 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class GameArchiveTest
+{
+    @Test
+    public void testGameRecord()
+    {
+        TicTacToe game = new TicTacToe(15, 5);
+        game.placeToken(Token.X, 8, 8);
+        game.placeToken(Token.O, 15, 15);
+        game.placeToken(Token.X, 1, 2);
+        ByteBuffer buffer = ByteBuffer.allocate(GameRecord.encodedLength(game));
+        GameRecord.write(game, buffer);
+        assertEquals(0, buffer.remaining());
+
+        buffer.flip();
+        TicTacToe replayed = GameRecord.read(buffer, null);
+        assertEquals(15, replayed.getBoardSize());
+        assertEquals(5, replayed.getWinLength());
+        assertEquals(3, replayed.getMoveCount());
+        assertEquals(Token.O, replayed.getToken(15, 15));
+        assertEquals(new Square(1, 2), replayed.getLastMove());
+
+        // A standard game takes a byte per move, plus four
+        TicTacToe standard = new TicTacToe();
+        standard.placeToken(Token.X, 2, 2);
+        assertEquals(5, GameRecord.encodedLength(standard));
+
+        // Playing the same square twice is not a game
+        ByteBuffer corrupt = ByteBuffer.wrap(new byte[] { 5, 3, 3, 2, 4, 4 });
+        try
+        {
+            GameRecord.read(corrupt, null);
+            fail("Should have thrown an exception for a corrupt record.");
+        }
+        catch(IllegalStateException ise) {}
+
+        // Nor is a board too big to allocate, or whose squares overflow an int
+        byte[][] huge = { { 5, (byte)0x80, (byte)0x80, 0x40, 1, 0 }, { 5, (byte)0x80, (byte)0x80, 4, 1, 0 },
+                { 3, 3, 4, 0 }, { 9, 3, 3, 0 } };
+        for(byte[] record : huge)
+        {
+            try
+            {
+                GameRecord.read(ByteBuffer.wrap(record), null);
+                fail("Should have thrown an exception for a corrupt record.");
+            }
+            catch(IllegalStateException ise) {}
+        }
+    }
+
+    @Test
+    public void testArchive()
+    throws Exception
+    {
+        File file = File.createTempFile("games", ".bin");
+        file.delete();
+        try
+        {
+            // Enough games to need several batches, with a change of rules
+            SplittableRandom random = new SplittableRandom(7);
+            List<String> expected = new ArrayList<String>();
+            try(GameArchive archive = new GameArchive(file.toPath()))
+            {
+                for(int i=0; i<20000; i++)
+                {
+                    TicTacToe game = i == 10000 ? new TicTacToe(9, 4) : new TicTacToe();
+                    while(game.getWinner() == null && !game.isBoardFull())
+                        game.play(MovePolicy.randomCell(game, random));
+                    archive.add(game);
+                    expected.add(describe(game));
+                }
+            }
+
+            // Reopening appends to the same file
+            List<String> actual = new ArrayList<String>();
+            TicTacToe[] first = new TicTacToe[1];
+            try(GameArchive archive = new GameArchive(file.toPath()))
+            {
+                archive.add(new TicTacToe());
+                expected.add(describe(new TicTacToe()));
+                long games = archive.replay(game ->
+                {
+                    if(first[0] == null)
+                        first[0] = game;
+                    else if(game.getBoardSize() == 3 && actual.size() < 10000)
+                        assertSame(first[0], game);
+                    actual.add(describe(game));
+                });
+                assertEquals(20001, games);
+            }
+            assertEquals(expected, actual);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCheckpoint()
+    throws Exception
+    {
+        File file = File.createTempFile("games", ".ckpt");
+        file.delete();
+        try
+        {
+            SessionRegistry sessions = new SessionRegistry();
+            SplittableRandom random = new SplittableRandom(3);
+            long firstLength;
+            try(GameCheckpointer checkpointer = new GameCheckpointer(file.toPath(), sessions))
+            {
+                assertEquals(0, checkpointer.getRestored());
+                for(int i=0; i<20000; i++)
+                {
+                    GameSession session = sessions.create(i % 2 == 0 ? 3 : 9, 3);
+                    for(int move=0; move<i % 5; move++)
+                        playRandom(session, random);
+                }
+                assertEquals(20000, checkpointer.checkpoint());
+                firstLength = file.length();
+                assertEquals(0, checkpointer.checkpoint());
+                
+                // Only games that changed or ended are saved again
+                sessions.remove(1);
+                sessions.remove(2);
+                playRandom(sessions.get(3), random);
+                assertEquals(3, checkpointer.checkpoint());
+                
+                // Saving every game over and over rewrites the file now and then
+                for(int round=0; round<8; round++)
+                {
+                    for(GameSession session : sessions.getSessions())
+                        playRandom(session, random);
+                    checkpointer.checkpoint();
+                }
+                assertTrue(file.length() < 4 * firstLength);
+                sessions.create(5);
+            }
+            Map<Long, String> expected = describe(sessions);
+            
+            // A frame cut short is dropped
+            long length = file.length();
+            try(FileOutputStream out = new FileOutputStream(file, true))
+            {
+                out.write(new byte[] { 0, 0, 0, 0, 0, 0, 1, 0, 1, 2, 3 });
+            }
+            SessionRegistry restored = new SessionRegistry();
+            try(GameCheckpointer checkpointer = new GameCheckpointer(file.toPath(), restored))
+            {
+                assertEquals(19999, checkpointer.getRestored());
+                assertEquals(length, file.length());
+                assertEquals(expected, describe(restored));
+                assertEquals(20002, restored.create(3).getId());
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCheckpointSegments()
+    throws Exception
+    {
+        File file = File.createTempFile("games", ".ckpt");
+        file.delete();
+        try
+        {
+            // Games of one move fill the first segment all but a few bytes,
+            // and the last game, which is unchanged, moves on to the next
+            SessionRegistry sessions = new SessionRegistry();
+            try(GameCheckpointer checkpointer = new GameCheckpointer(file.toPath(), sessions))
+            {
+                for(int i=0; i<5042; i++)
+                    sessions.create(3, 3);
+                assertEquals(5042, checkpointer.checkpoint());
+                for(int id=1; id<=5041; id++)
+                    sessions.get(id).move(2, 2);
+                assertEquals(5041, checkpointer.checkpoint());
+                assertEquals(0, checkpointer.checkpoint());
+            }
+            Map<Long, String> expected = describe(sessions);
+
+            SessionRegistry restored = new SessionRegistry();
+            try(GameCheckpointer checkpointer = new GameCheckpointer(file.toPath(), restored))
+            {
+                assertEquals(5042, checkpointer.getRestored());
+                assertEquals(expected, describe(restored));
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCheckpointDamage()
+    throws Exception
+    {
+        File file = File.createTempFile("games", ".ckpt");
+        file.delete();
+        try
+        {
+            SessionRegistry sessions = new SessionRegistry();
+            long damaged;
+            try(GameCheckpointer checkpointer = new GameCheckpointer(file.toPath(), sessions))
+            {
+                sessions.create(3, 3);
+                sessions.create(3, 3);
+                checkpointer.checkpoint();
+                sessions.get(1).move(1, 1);
+                checkpointer.checkpoint();
+                damaged = file.length() - 1;
+                sessions.get(2).move(2, 2);
+            }
+            try(RandomAccessFile out = new RandomAccessFile(file, "rw"))
+            {
+                out.seek(damaged);
+                int value = out.read();
+                out.seek(damaged);
+                out.write(value ^ 1);
+            }
+
+            // The damaged frame is skipped, and the rest restored
+            SessionRegistry restored = new SessionRegistry();
+            try(GameCheckpointer checkpointer = new GameCheckpointer(file.toPath(), restored))
+            {
+                assertEquals(1, checkpointer.getDamagedFrames());
+                assertEquals(2, checkpointer.getRestored());
+                assertEquals("BOARD 3 ~~~~~~~~~ TURN X", restored.get(1).board() + " " + restored.get(1).turn());
+                assertEquals(sessions.get(2).board(), restored.get(2).board());
+            }
+
+            // Then written out again without it
+            SessionRegistry rewritten = new SessionRegistry();
+            try(GameCheckpointer checkpointer = new GameCheckpointer(file.toPath(), rewritten))
+            {
+                assertEquals(0, checkpointer.getDamagedFrames());
+                assertEquals(2, checkpointer.getRestored());
+                rewritten.create(3, 3);
+                assertEquals(1, checkpointer.checkpoint());
+            }
+
+            // A damaged length before the last frame stops the file opening,
+            // and leaves the frames after it alone
+            long length = file.length();
+            try(RandomAccessFile out = new RandomAccessFile(file, "rw"))
+            {
+                out.seek(5 + 6);
+                int value = out.read();
+                out.seek(5 + 6);
+                out.write(value ^ 1);
+            }
+            try
+            {
+                new GameCheckpointer(file.toPath(), new SessionRegistry()).close();
+                fail("Should have thrown an exception for a damaged frame length.");
+            }
+            catch(IllegalStateException ise) {}
+            assertEquals(length, file.length());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Play a random empty square, if the game is still going.
+     */
+    private static void playRandom(GameSession session, SplittableRandom random)
+    {
+        String board = session.board();
+        String cells = board.substring(board.lastIndexOf(' ') + 1);
+        int size = (int)Math.sqrt(cells.length());
+        if(!session.turn().startsWith("TURN"))
+            return;
+        int cell;
+        do
+            cell = random.nextInt(cells.length());
+        while(cells.charAt(cell) != '~');
+        session.move(cell / size + 1, cell % size + 1);
+    }
+
+    private static Map<Long, String> describe(SessionRegistry sessions)
+    {
+        Map<Long, String> games = new HashMap<Long, String>();
+        for(GameSession session : sessions.getSessions())
+            games.put(session.getId(), session.board() + " " + session.turn());
+        return games;
+    }
+
+    private static String describe(TicTacToe game)
+    {
+        StringBuilder text = new StringBuilder(game.getBoardSize() + "/" + game.getWinLength() + ":");
+        for(int ply=0; ply<game.getMoveCount(); ply++)
+            text.append(game.moves[ply]).append(' ');
+        return text.append(game.getWinner()).toString();
+    }
+}
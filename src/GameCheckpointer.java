@@ -0,0 +1,503 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the games hosted by a {@link SessionRegistry} to a file every so
+ * often, so a server that restarts can pick them up where they were.
+ *
+ * Each checkpoint only writes the games that changed since the one before,
+ * and notes the ones that have gone. They are appended to the file as one
+ * frame: its length in bytes, a CRC-32 of the rest and a CRC-32 of those
+ * two, then for each game its
+ * session id followed by its {@link GameRecord}, or minus its id if it has
+ * gone. The frame is encoded into direct buffers and written with a single
+ * gather write, then forced to disk. Games only count as saved once that has
+ * worked. Once the file holds more than twice what the live games need, the
+ * next checkpoint writes them all to a fresh file instead and puts it in
+ * place of the old one.
+ *
+ * Opening the file restores the games in it, mapping each frame into memory
+ * and playing the records straight out of the mapping. A last frame cut short
+ * by a crash is dropped, and a frame whose games are damaged is skipped, so
+ * they come back as they were in an earlier frame. A damaged frame length
+ * leaves no way to find the frames after it, so it stops the file opening
+ * rather than losing them.
+ */
+public class GameCheckpointer implements Closeable
+{
+    private static final byte[] HEADER = { 'T', 'T', 'T', 'C', 3 };
+    private static final int FRAME_HEADER_SIZE = 16; // length, checksum and checksum of both
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    private static final long MIN_COMPACT_SIZE = 1 << 20; // smaller files are never rewritten
+
+    private final Path file;
+    private final SessionRegistry sessions;
+    private final Map<Long, Saved> saved = new HashMap<Long, Saved>(); // by session id
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>(); // direct, kept between checkpoints
+    private final ByteBuffer frameHeader = ByteBuffer.allocateDirect(FRAME_HEADER_SIZE);
+    private final int restored;
+    private int damagedFrames;
+    private long[] pendingIds = new long[1024]; // games in the frame being written, minus the id if gone
+    private long[] pendingVersions = new long[1024];
+    private int[] pendingLengths = new int[1024];
+    private int pendingCount;
+    private FileChannel channel;
+    private int segment; // segment being filled
+    private long liveBytes; // bytes taken by the latest entry of each live game
+    private boolean compactNext;
+    private boolean closed;
+    private ScheduledExecutorService timer;
+
+    /**
+     * What the file holds for one game.
+     */
+    private static class Saved
+    {
+        long version;
+        int length; // bytes in the file, id and all
+    }
+
+    /**
+     * Open a checkpoint file, creating it if there is none, and host the
+     * games saved in it. This should be done before the registry hosts any
+     * other games.
+     *
+     * @throws IllegalStateException if the file is not a checkpoint file,
+     *         or a frame length in it is damaged.
+     */
+    public GameCheckpointer(Path file, SessionRegistry sessions) throws IOException
+    {
+        this.file = file;
+        this.sessions = sessions;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segments.add(ByteBuffer.allocateDirect(SEGMENT_SIZE));
+        try
+        {
+            this.restored = restore();
+        }
+        catch(IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read back every complete frame in the file and host the games.
+     *
+     * @return The number of games restored.
+     */
+    private int restore() throws IOException
+    {
+        long end = channel.size();
+        if(end == 0)
+        {
+            writeFully(channel, ByteBuffer.wrap(HEADER), 0);
+            return 0;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER.length);
+        while(header.hasRemaining() && channel.read(header, header.position()) > 0)
+            ;
+        header.flip();
+        if(!header.equals(ByteBuffer.wrap(HEADER)))
+            throw new IllegalStateException("ERROR: Not a checkpoint file.");
+
+        Map<Long, TicTacToe> games = new HashMap<Long, TicTacToe>();
+        long offset = HEADER.length;
+        while(end - offset >= FRAME_HEADER_SIZE)
+        {
+            frameHeader.clear();
+            while(frameHeader.hasRemaining() && channel.read(frameHeader, offset + frameHeader.position()) > 0)
+                ;
+            if(headerChecksum() != frameHeader.getInt(12))
+                throw new IllegalStateException(String.format("ERROR: Damaged checkpoint frame at byte %d.", offset));
+            long length = frameHeader.getLong(0);
+            int checksum = frameHeader.getInt(8);
+            if(length < 0)
+                throw new IllegalStateException(String.format("ERROR: Damaged checkpoint frame at byte %d.", offset));
+
+            // Only the last frame can run past the end
+            if(length > end - offset - FRAME_HEADER_SIZE)
+                break;
+            if(length > Integer.MAX_VALUE
+                    || !restoreFrame(channel.map(FileChannel.MapMode.READ_ONLY, offset + FRAME_HEADER_SIZE, length),
+                            checksum, games))
+                damagedFrames++;
+            offset += FRAME_HEADER_SIZE + length;
+        }
+
+        // Drop the end of a frame that was never finished
+        if(offset < end)
+            channel.truncate(offset);
+
+        for(Map.Entry<Long, TicTacToe> game : games.entrySet())
+            sessions.restore(game.getKey(), game.getValue());
+
+        // Write the games out afresh, without the damage
+        compactNext = damagedFrames > 0;
+        return games.size();
+    }
+
+    /**
+     * Read back one frame, which is only used if all of it is sound.
+     *
+     * @return False if the frame is damaged.
+     */
+    private boolean restoreFrame(MappedByteBuffer frame, int checksum, Map<Long, TicTacToe> games)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(frame.duplicate());
+        if((int)crc.getValue() != checksum)
+            return false;
+
+        pendingCount = 0;
+        List<TicTacToe> read = new ArrayList<TicTacToe>();
+        try
+        {
+            while(frame.hasRemaining())
+            {
+                int start = frame.position();
+                long id = frame.getLong();
+                if(id < 0)
+                {
+                    addPending(id, 0, 0);
+                    continue;
+                }
+                read.add(GameRecord.read(frame, null));
+                addPending(id, 0, frame.position() - start);
+            }
+        }
+        catch(RuntimeException re)
+        {
+            return false;
+        }
+
+        for(int i=0, game=0; i<pendingCount; i++)
+        {
+            if(pendingIds[i] < 0)
+                games.remove(-pendingIds[i]);
+            else
+                games.put(pendingIds[i], read.get(game++));
+        }
+        applyPending();
+        return true;
+    }
+
+    /**
+     * Gets the number of damaged frames skipped when the file was opened.
+     */
+    public int getDamagedFrames()
+    {
+        return damagedFrames;
+    }
+
+    /**
+     * Gets the number of games restored when the file was opened.
+     */
+    public int getRestored()
+    {
+        return restored;
+    }
+
+    /**
+     * Save the games that changed since the last checkpoint.
+     *
+     * If writing fails, the next checkpoint saves every game to a fresh file.
+     *
+     * @return The number of games saved or dropped.
+     */
+    public synchronized int checkpoint() throws IOException
+    {
+        boolean compact = compactNext
+                || (channel.size() > MIN_COMPACT_SIZE && channel.size() > 2 * liveBytes);
+
+        pendingCount = 0;
+        segment = 0;
+        segments.get(0).clear();
+        for(GameSession session : sessions.getSessions())
+        {
+            long id = session.getId();
+            Saved entry = compact ? null : saved.get(id);
+            long savedVersion = entry == null ? -1 : entry.version;
+
+            ByteBuffer out = segments.get(segment);
+            int start = out.position();
+            long version;
+            while(true)
+            {
+                try
+                {
+                    out.putLong(id);
+                    version = session.save(out, savedVersion);
+                    break;
+                }
+                catch(BufferOverflowException boe)
+                {
+                    out = nextSegment(out, start);
+                    start = 0;
+                }
+            }
+            if(version == savedVersion)
+                out.position(start);
+            else
+                addPending(id, version, out.position() - start);
+        }
+
+        // A fresh file only holds the live games, so needs no word of the rest
+        if(!compact)
+        {
+            for(Long id : saved.keySet())
+            {
+                if(sessions.get(id) != null)
+                    continue;
+                ByteBuffer out = segments.get(segment);
+                if(out.remaining() < 8)
+                    out = nextSegment(out, out.position());
+                out.putLong(-id);
+                addPending(-id, 0, 0);
+            }
+        }
+
+        int changed = pendingCount;
+        if(changed == 0 && !compact)
+            return 0;
+        try
+        {
+            write(compact);
+        }
+        catch(IOException ioe)
+        {
+            // The file may not hold what was written, so start over
+            compactNext = true;
+            throw ioe;
+        }
+
+        // Only now are the games safely in the file
+        if(compact)
+        {
+            saved.clear();
+            liveBytes = 0;
+        }
+        applyPending();
+        compactNext = false;
+        return changed;
+    }
+
+    private void addPending(long id, long version, int length)
+    {
+        if(pendingCount == pendingIds.length)
+        {
+            pendingIds = Arrays.copyOf(pendingIds, pendingCount * 2);
+            pendingVersions = Arrays.copyOf(pendingVersions, pendingCount * 2);
+            pendingLengths = Arrays.copyOf(pendingLengths, pendingCount * 2);
+        }
+        pendingIds[pendingCount] = id;
+        pendingVersions[pendingCount] = version;
+        pendingLengths[pendingCount++] = length;
+    }
+
+    /**
+     * Note the games in the frame just written or read as saved.
+     */
+    private void applyPending()
+    {
+        for(int i=0; i<pendingCount; i++)
+        {
+            long id = pendingIds[i];
+            if(id < 0)
+            {
+                Saved gone = saved.remove(-id);
+                if(gone != null)
+                    liveBytes -= gone.length;
+                continue;
+            }
+            Saved entry = saved.get(id);
+            if(entry == null)
+                saved.put(id, entry = new Saved());
+            else
+                liveBytes -= entry.length;
+            entry.version = pendingVersions[i];
+            entry.length = pendingLengths[i];
+            liveBytes += entry.length;
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Move on to the next segment, or to a bigger one if an entry didn't
+     * fit in an empty segment.
+     *
+     * @param start Where the entry that didn't fit starts in the segment.
+     */
+    private ByteBuffer nextSegment(ByteBuffer out, int start)
+    {
+        out.position(start);
+        int capacity = SEGMENT_SIZE;
+        if(start == 0)
+            capacity = out.capacity() * 2;
+        else
+            segment++;
+
+        if(segment == segments.size())
+            segments.add(ByteBuffer.allocateDirect(capacity));
+        else if(segments.get(segment).capacity() < capacity)
+            segments.set(segment, ByteBuffer.allocateDirect(capacity));
+        ByteBuffer next = segments.get(segment);
+        next.clear();
+        return next;
+    }
+
+    /**
+     * Write the segments out as a frame.
+     *
+     * @param fresh True to write a fresh file holding just this frame.
+     */
+    private void write(boolean fresh) throws IOException
+    {
+        // Segments left empty by entries that moved on to the next are dropped
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(segment + 2);
+        buffers.add(frameHeader);
+        CRC32 crc = new CRC32();
+        long length = 0;
+        for(int i=0; i<=segment; i++)
+        {
+            ByteBuffer buffer = segments.get(i);
+            buffer.flip();
+            if(!buffer.hasRemaining())
+                continue;
+            crc.update(buffer.duplicate());
+            buffers.add(buffer);
+            length += buffer.remaining();
+        }
+        frameHeader.clear();
+        frameHeader.putLong(length);
+        frameHeader.putInt((int)crc.getValue());
+        frameHeader.putInt(headerChecksum());
+        frameHeader.flip();
+        ByteBuffer[] frame = buffers.toArray(new ByteBuffer[buffers.size()]);
+        length += FRAME_HEADER_SIZE;
+
+        if(!fresh)
+        {
+            channel.position(channel.size());
+            writeFully(channel, frame, length);
+            channel.force(false);
+            return;
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try(FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            writeFully(out, ByteBuffer.wrap(HEADER), 0);
+            out.position(HEADER.length);
+            writeFully(out, frame, length);
+            out.force(true);
+        }
+        channel.close();
+        try
+        {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+    /**
+     * Gets the checksum of the length and checksum in the frame header.
+     */
+    private int headerChecksum()
+    {
+        ByteBuffer lengthAndChecksum = frameHeader.duplicate();
+        lengthAndChecksum.position(0);
+        lengthAndChecksum.limit(12);
+        CRC32 crc = new CRC32();
+        crc.update(lengthAndChecksum);
+        return (int)crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer[] buffers, long length) throws IOException
+    {
+        while(length > 0)
+            length -= channel.write(buffers);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while(buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+    }
+
+    /**
+     * Save a checkpoint every so often on a background thread. Failures
+     * are printed to the given stream.
+     */
+    public synchronized void start(long periodSeconds, PrintStream errors)
+    {
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(() -> checkpointInBackground(errors), periodSeconds, periodSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    private synchronized void checkpointInBackground(PrintStream errors)
+    {
+        if(closed)
+            return;
+        try
+        {
+            checkpoint();
+        }
+        catch(IOException ioe)
+        {
+            errors.println(String.format("ERROR: Could not save checkpoint. %s", ioe.getMessage()));
+        }
+    }
+
+    /**
+     * Stop saving checkpoints in the background, save a last one and
+     * close the file.
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if(closed)
+            return;
+        closed = true;
+        if(timer != null)
+            timer.shutdown();
+        try
+        {
+            checkpoint();
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+}
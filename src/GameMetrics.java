@@ -0,0 +1,256 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts of what the games in this process are doing: games started,
+ * finished and drawn, moves played and refused, and how long placing a
+ * token and asking whose turn it is take, for each size of board.
+ *
+ * Metrics are off unless the JVM is started with
+ * {@code -Dtictactoe.metrics=true}. The switch is a constant, so when it is
+ * off the JIT drops the instrumentation from the game entirely. When on,
+ * the counts are shown through JMX, and with
+ * {@code -Dtictactoe.metrics.dumpSeconds=n} also printed every n seconds.
+ *
+ * Only games played through {@link TicTacToe#placeToken} and the like are
+ * counted, not the positions searched by computer players.
+ */
+public final class GameMetrics implements GameMetricsMBean
+{
+    /** True if metrics are being gathered. */
+    public static final boolean ENABLED = Boolean.getBoolean("tictactoe.metrics");
+
+    static final GameMetrics INSTANCE = new GameMetrics();
+
+    /** Operations timed for each board size. */
+    static final int PLACE_TOKEN = 0;
+    static final int NEXT_TURN = 1;
+    private static final String[] OPERATIONS = { "placeToken", "getNextTurn" };
+
+    private final LongAdder gamesStarted = new LongAdder();
+    private final LongAdder gamesFinished = new LongAdder();
+    private final LongAdder gamesDrawn = new LongAdder();
+    private final LongAdder movesPlayed = new LongAdder();
+    private final LongAdder[] illegalMoves = new LongAdder[MoveStatus.GAME_OVER + 1]; // by status
+    private final ConcurrentHashMap<Integer, LatencyHistogram[]> timings = new ConcurrentHashMap<Integer, LatencyHistogram[]>();
+
+    static
+    {
+        if(ENABLED)
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+                        new ObjectName("tictactoe:type=GameMetrics"));
+            }
+            catch(JMException jme)
+            {
+                System.out.println(String.format("ERROR: Could not register game metrics. %s", jme.getMessage()));
+            }
+            long dumpSeconds = Long.getLong("tictactoe.metrics.dumpSeconds", 0);
+            if(dumpSeconds > 0)
+                INSTANCE.startDump(System.out, dumpSeconds);
+        }
+    }
+
+    private GameMetrics()
+    {
+        for(int status=MoveStatus.OCCUPIED; status<illegalMoves.length; status++)
+            illegalMoves[status] = new LongAdder();
+    }
+
+    /**
+     * Gets the metrics for this process.
+     */
+    public static GameMetrics get()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the timers for games on boards of the given size, one per operation.
+     */
+    LatencyHistogram[] timings(int boardSize)
+    {
+        return timings.computeIfAbsent(boardSize, size -> {
+            LatencyHistogram[] histograms = new LatencyHistogram[OPERATIONS.length];
+            for(int i=0; i<histograms.length; i++)
+                histograms[i] = new LatencyHistogram();
+            return histograms;
+        });
+    }
+
+    /**
+     * Count a move tried through the public API.
+     *
+     * @param status What came of it, a {@link MoveStatus}.
+     */
+    void moveMade(int status)
+    {
+        if(MoveStatus.isPlayed(status))
+            movesPlayed.increment();
+        else
+            illegalMoves[status].increment();
+    }
+
+    /**
+     * Count a series of moves played in one go.
+     *
+     * @param played Number of moves played.
+     * @param status Status of the last move tried, a {@link MoveStatus}.
+     */
+    void movesApplied(int played, int status)
+    {
+        movesPlayed.add(played);
+        if(!MoveStatus.isPlayed(status))
+            illegalMoves[status].increment();
+    }
+
+    /**
+     * Count a game's first move. Each game keeps track of whether it has
+     * been counted, so taking moves back and playing them again doesn't
+     * count it twice.
+     */
+    void gameStarted()
+    {
+        gamesStarted.increment();
+    }
+
+    /**
+     * Count a game that has been won, filled or can no longer be won.
+     */
+    void gameFinished(boolean drawn)
+    {
+        gamesFinished.increment();
+        if(drawn)
+            gamesDrawn.increment();
+    }
+
+    @Override
+    public long getGamesStarted()
+    {
+        return gamesStarted.sum();
+    }
+
+    @Override
+    public long getGamesFinished()
+    {
+        return gamesFinished.sum();
+    }
+
+    @Override
+    public long getGamesDrawn()
+    {
+        return gamesDrawn.sum();
+    }
+
+    @Override
+    public long getGamesInFlight()
+    {
+        return Math.max(0, getGamesStarted() - getGamesFinished());
+    }
+
+    @Override
+    public long getMovesPlayed()
+    {
+        return movesPlayed.sum();
+    }
+
+    @Override
+    public long getWrongTurnMoves()
+    {
+        return illegalMoves[MoveStatus.WRONG_TURN].sum();
+    }
+
+    @Override
+    public long getOutOfRangeMoves()
+    {
+        return illegalMoves[MoveStatus.OUT_OF_RANGE].sum();
+    }
+
+    @Override
+    public long getOccupiedSquareMoves()
+    {
+        return illegalMoves[MoveStatus.OCCUPIED].sum();
+    }
+
+    @Override
+    public long getMovesAfterGameOver()
+    {
+        return illegalMoves[MoveStatus.GAME_OVER].sum();
+    }
+
+    @Override
+    public String[] getLatencies()
+    {
+        List<String> lines = new ArrayList<String>();
+        for(Map.Entry<Integer, LatencyHistogram[]> entry : new TreeMap<Integer, LatencyHistogram[]>(timings).entrySet())
+        {
+            for(int operation=0; operation<OPERATIONS.length; operation++)
+            {
+                LatencyHistogram histogram = entry.getValue()[operation];
+                long count = histogram.getCount();
+                if(count == 0)
+                    continue;
+                lines.add(String.format("%s size=%d count=%d p50=%dns p99=%dns p99.9=%dns max=%dns",
+                        OPERATIONS[operation], entry.getKey(), count, histogram.getValueAtPercentile(50),
+                        histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMax()));
+            }
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public void reset()
+    {
+        gamesStarted.reset();
+        gamesFinished.reset();
+        gamesDrawn.reset();
+        movesPlayed.reset();
+        for(int status=MoveStatus.OCCUPIED; status<illegalMoves.length; status++)
+            illegalMoves[status].reset();
+        for(LatencyHistogram[] histograms : timings.values())
+        {
+            for(LatencyHistogram histogram : histograms)
+                histogram.reset();
+        }
+    }
+
+    /**
+     * Print the metrics every so often on a background thread.
+     */
+    public void startDump(PrintStream out, long periodSeconds)
+    {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(() -> out.print(this), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder(String.format(
+                "games started=%d finished=%d drawn=%d inFlight=%d moves=%d%n"
+                + "refused wrongTurn=%d outOfRange=%d occupied=%d gameOver=%d%n",
+                getGamesStarted(), getGamesFinished(), getGamesDrawn(), getGamesInFlight(), getMovesPlayed(),
+                getWrongTurnMoves(), getOutOfRangeMoves(), getOccupiedSquareMoves(), getMovesAfterGameOver()));
+        for(String line : getLatencies())
+            text.append(line).append(System.lineSeparator());
+        return text.toString();
+    }
+}
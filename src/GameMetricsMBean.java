@@ -0,0 +1,38 @@
+/**
+ * What {@link GameMetrics} shows through JMX, under the name
+ * {@code tictactoe:type=GameMetrics}.
+ */
+public interface GameMetricsMBean
+{
+    long getGamesStarted();
+
+    long getGamesFinished();
+
+    long getGamesDrawn();
+
+    /**
+     * Gets the number of games started but not yet won or drawn, including
+     * any that were abandoned.
+     */
+    long getGamesInFlight();
+
+    long getMovesPlayed();
+
+    long getWrongTurnMoves();
+
+    long getOutOfRangeMoves();
+
+    long getOccupiedSquareMoves();
+
+    long getMovesAfterGameOver();
+
+    /**
+     * Gets a line of latency percentiles for each operation and board size.
+     */
+    String[] getLatencies();
+
+    /**
+     * Set every count back to zero.
+     */
+    void reset();
+}
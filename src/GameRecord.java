@@ -0,0 +1,167 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary form of a game: its rules and the cells played, in order.
+ *
+ * A record is a series of unsigned varints (7 bits per byte, low bits first,
+ * high bit set on every byte but the last): the length of the rest of the
+ * record in bytes, the board size, the win length, the number of moves and
+ * then each move's cell index, row by row from 0. A 3x3 game takes at most
+ * 13 bytes, and moves on boards up to 11x11 take one byte each. Boards of
+ * more than {@link #MAX_CELLS} squares are not recorded, so a damaged
+ * record can't ask for a huge board.
+ */
+public final class GameRecord
+{
+    /**
+     * Longest a varint of an int can be.
+     */
+    static final int MAX_VARINT_LENGTH = 5;
+
+    /**
+     * Most squares a recorded board can have.
+     */
+    static final long MAX_CELLS = 1 << 24;
+
+    private GameRecord()
+    {
+    }
+
+    /**
+     * Gets the number of bytes a game takes as a record.
+     */
+    public static int encodedLength(TicTacToe game)
+    {
+        int body = bodyLength(game);
+        return varintLength(body) + body;
+    }
+
+    /**
+     * Write the moves on a game's board at the buffer's position.
+     *
+     * @throws BufferOverflowException if the record does not fit, in which
+     *         case the buffer's position is left where it was.
+     * @throws IllegalArgumentException if the board has more than
+     *         {@link #MAX_CELLS} squares.
+     */
+    public static void write(TicTacToe game, ByteBuffer out)
+    {
+        if((long)game.boardSize*game.boardSize > MAX_CELLS)
+            throw new IllegalArgumentException(
+                    String.format("ERROR: Boards of more than %d squares can't be recorded.", MAX_CELLS));
+        int body = bodyLength(game);
+        if(out.remaining() < varintLength(body) + body)
+            throw new BufferOverflowException();
+
+        writeVarint(out, body);
+        writeVarint(out, game.boardSize);
+        writeVarint(out, game.winLength);
+        writeVarint(out, game.moveCount);
+        for(int ply=0; ply<game.moveCount; ply++)
+            writeVarint(out, game.moves[ply]);
+    }
+
+    /**
+     * Read the record at the buffer's position and play it out, straight
+     * from the buffer with no copy of the record in between.
+     *
+     * @param reuse A game to play the record into if it has the same rules,
+     *        to save allocating a new one, or null.
+     * @return The game, which is reuse if that could be used.
+     * @throws IllegalStateException if the record is not a legal game.
+     */
+    public static TicTacToe read(ByteBuffer in, TicTacToe reuse)
+    {
+        int body = readVarint(in);
+        if(body < 0 || body > in.remaining())
+            throw new IllegalStateException(String.format("ERROR: Corrupt game record at byte %d.", in.position()));
+        int end = in.position() + body;
+        int size = readVarint(in);
+        int winLength = readVarint(in);
+        int moveCount = readVarint(in);
+
+        // Check the rules before allocating, since a damaged size could ask
+        // for any amount of memory
+        if(size < 1 || (long)size*size > MAX_CELLS || winLength < 1 || winLength > size
+                || moveCount < 0 || moveCount > (long)size*size || in.position() > end)
+            throw new IllegalStateException(String.format("ERROR: Corrupt game record at byte %d.", end - body));
+
+        TicTacToe game = reuse;
+        if(game != null && game.boardSize == size && game.winLength == winLength)
+            game.reset();
+        else
+            game = new TicTacToe(size, winLength);
+
+        for(int ply=0; ply<moveCount; ply++)
+        {
+            int cell = readVarint(in);
+            if(cell < 0 || cell >= size*size || game.board.get(cell) != null || game.isGameOver)
+                throw new IllegalStateException(String.format("ERROR: Corrupt game record at byte %d.", end - body));
+            game.play(cell);
+        }
+        game.publishSnapshot();
+        if(in.position() != end)
+            throw new IllegalStateException(String.format("ERROR: Corrupt game record at byte %d.", end - body));
+        return game;
+    }
+
+    /**
+     * Determine whether a whole record starts at the buffer's position,
+     * without moving it.
+     */
+    static boolean hasRecord(ByteBuffer in)
+    {
+        int position = in.position();
+        long body = 0;
+        for(int shift=0; shift<7*MAX_VARINT_LENGTH; shift+=7)
+        {
+            if(position >= in.limit())
+                return false;
+            byte b = in.get(position++);
+            body |= (long)(b & 0x7F) << shift;
+            if(b >= 0)
+                return in.limit() - position >= body;
+        }
+        throw new IllegalStateException(String.format("ERROR: Corrupt game record at byte %d.", in.position()));
+    }
+
+    private static int bodyLength(TicTacToe game)
+    {
+        int length = varintLength(game.boardSize) + varintLength(game.winLength) + varintLength(game.moveCount);
+        for(int ply=0; ply<game.moveCount; ply++)
+            length += varintLength(game.moves[ply]);
+        return length;
+    }
+
+    static int varintLength(int value)
+    {
+        int length = 1;
+        while((value >>>= 7) != 0)
+            length++;
+        return length;
+    }
+
+    static void writeVarint(ByteBuffer out, int value)
+    {
+        while((value & ~0x7F) != 0)
+        {
+            out.put((byte)(value | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte)value);
+    }
+
+    static int readVarint(ByteBuffer in)
+    {
+        int value = 0;
+        for(int shift=0; shift<7*MAX_VARINT_LENGTH; shift+=7)
+        {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if(b >= 0)
+                return value;
+        }
+        throw new IllegalStateException(String.format("ERROR: Corrupt game record at byte %d.", in.position()));
+    }
+}
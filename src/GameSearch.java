@@ -0,0 +1,380 @@
+import java.util.Arrays;
+
+/**
+ * Computer opponent that looks ahead through the game tree.
+ *
+ * The search is a negamax with alpha-beta pruning, deepened one move at a
+ * time until it either runs out of moves to look at or out of its time
+ * budget. Positions already searched are remembered in a
+ * {@link TranspositionTable} keyed by Zobrist hash, which is updated as
+ * moves are played and taken back rather than recomputed.
+ *
+ * A 3x3 board is solved outright in well under a millisecond. On larger
+ * boards the search plays the best move it found at the deepest depth it
+ * finished in time, scoring unfinished positions by how many tokens each
+ * player has in lines the other hasn't blocked. When runs shorter than the
+ * board win, each run of squares that long along a line is scored on its own.
+ */
+public class GameSearch
+{
+    /** Score of a won position, less the number of moves it took to win. */
+    public static final int WIN = 1000000;
+
+    private static final int DEFAULT_TABLE_ENTRIES = 1 << 20;
+    private static final int TIME_CHECK_INTERVAL = 1024;
+
+    private final TranspositionTable table;
+
+    // State of the search in progress
+    private TicTacToe game;
+    private long[] keys;
+    private long hash;
+    private int cellCount;
+    private long nodes;
+    private long deadline;
+    private boolean aborted;
+
+    /**
+     * Create a search with its own transposition table.
+     */
+    public GameSearch()
+    {
+        this(new TranspositionTable(DEFAULT_TABLE_ENTRIES));
+    }
+
+    /**
+     * Create a search that uses the given table, which may be shared with
+     * other searches running at the same time.
+     */
+    public GameSearch(TranspositionTable table)
+    {
+        this.table = table;
+    }
+
+    /**
+     * Find the best move for the player whose turn it is.
+     *
+     * @param game Game to search. It is not changed.
+     * @param timeBudgetMillis How long to search for.
+     * @return The best move found, with statistics about the search.
+     * @throws IllegalStateException if the game is already over.
+     */
+    public Result search(TicTacToe game, long timeBudgetMillis)
+    {
+        return search(game, Integer.MAX_VALUE, timeBudgetMillis);
+    }
+
+    /**
+     * Find the best move for the player whose turn it is, looking no more
+     * than the given number of moves ahead.
+     *
+     * @param game Game to search. It is not changed.
+     * @param maxDepth Number of moves to look ahead at most.
+     * @param timeBudgetMillis How long to search for.
+     * @return The best move found, with statistics about the search.
+     * @throws IllegalStateException if the game is already over.
+     */
+    public Result search(TicTacToe game, int maxDepth, long timeBudgetMillis)
+    {
+        if(game.isGameOver || game.getMoveCount() == game.moves.length)
+            throw new IllegalStateException("ERROR: This game is over already.");
+
+        long start = System.nanoTime();
+        this.game = game.copy();
+        this.keys = Zobrist.keys(game.getBoardSize());
+        this.hash = Zobrist.hash(game);
+        this.cellCount = game.moves.length;
+        this.nodes = 0;
+        this.deadline = start + timeBudgetMillis * 1000000L;
+        this.aborted = false;
+
+        int[] rootMoves = emptyCells(-1);
+        int emptyCount = rootMoves.length;
+        int bestMove = rootMoves[0];
+        int bestScore = 0;
+        int completedDepth = 0;
+
+        for(int depth=1; depth<=Math.min(maxDepth, emptyCount); depth++)
+        {
+            int alpha = -WIN - 1;
+            int depthBestMove = -1;
+            for(int cell : rootMoves)
+            {
+                int score = scoreMove(cell, depth, alpha, WIN + 1, 0);
+                if(aborted)
+                    break;
+                if(score > alpha)
+                {
+                    alpha = score;
+                    depthBestMove = cell;
+                }
+            }
+            if(aborted)
+                break;
+
+            bestMove = depthBestMove;
+            bestScore = alpha;
+            completedDepth = depth;
+            table.store(hash, bestScore, depth, TranspositionTable.EXACT, bestMove);
+            moveToFront(rootMoves, bestMove);
+
+            // Nothing more to learn once the result is certain
+            if(Math.abs(bestScore) > WIN - cellCount)
+                break;
+        }
+
+        int size = game.getBoardSize();
+        boolean solved = completedDepth == emptyCount || Math.abs(bestScore) > WIN - cellCount;
+        Result result = new Result(Square.of(bestMove/size + 1, bestMove%size + 1), bestScore,
+                completedDepth, solved, nodes, System.nanoTime() - start);
+        this.game = null;
+        return result;
+    }
+
+    /**
+     * Score a position exactly for the player to move by searching to the
+     * end of the game, with no time limit.
+     *
+     * @param game Game to search. It is played on and left as it was found.
+     * @param ply Number of moves already made from the position the caller
+     *        is scoring, so that quicker wins score higher.
+     */
+    int solve(TicTacToe game, int alpha, int beta, int ply)
+    {
+        this.game = game;
+        this.keys = Zobrist.keys(game.getBoardSize());
+        this.hash = Zobrist.hash(game);
+        this.cellCount = game.moves.length;
+        this.deadline = Long.MAX_VALUE;
+        this.aborted = false;
+
+        int score = negamax(cellCount - game.getMoveCount(), alpha, beta, ply);
+        this.game = null;
+        return score;
+    }
+
+    /**
+     * Gets the number of positions searched since this search was created
+     * or last used to find a move.
+     */
+    long getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * Play a move, score it for the player making it, and take it back.
+     */
+    private int scoreMove(int cell, int depth, int alpha, int beta, int ply)
+    {
+        Token token = game.getNextTurn();
+        game.play(cell);
+        hash ^= keys[cell*2 + token.ordinal()];
+
+        int score;
+        if(game.winner != null)
+            score = WIN - ply - 1;
+        else if(game.getMoveCount() == cellCount || game.isDrawForced())
+            score = 0;
+        else if(depth == 1)
+            score = -evaluate();
+        else
+            score = -negamax(depth-1, -beta, -alpha, ply+1);
+
+        hash ^= keys[cell*2 + token.ordinal()];
+        game.unplay();
+        return score;
+    }
+
+    /**
+     * Score the current position for the player to move, looking the given
+     * number of moves ahead.
+     */
+    private int negamax(int depth, int alpha, int beta, int ply)
+    {
+        if(++nodes % TIME_CHECK_INTERVAL == 0 && System.nanoTime() > deadline)
+            aborted = true;
+        if(aborted)
+            return 0;
+
+        // Use what we already know about this position
+        int hashMove = -1;
+        long entry = table.probe(hash);
+        if(entry != TranspositionTable.MISS)
+        {
+            hashMove = TranspositionTable.move(entry);
+            if(TranspositionTable.depth(entry) >= depth)
+            {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if(bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && score <= alpha))
+                    return score;
+            }
+        }
+
+        int originalAlpha = alpha;
+        int bestScore = -WIN - 1;
+        int bestMove = -1;
+        for(int cell : emptyCells(hashMove))
+        {
+            int score = scoreMove(cell, depth, alpha, beta, ply);
+            if(aborted)
+                return 0;
+            if(score > bestScore)
+            {
+                bestScore = score;
+                bestMove = cell;
+            }
+            if(score > alpha)
+                alpha = score;
+            if(alpha >= beta)
+                break;
+        }
+
+        int bound = bestScore <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                : bestScore >= beta ? TranspositionTable.LOWER_BOUND
+                : TranspositionTable.EXACT;
+        table.store(hash, toTable(bestScore, ply), depth, bound, bestMove);
+        return bestScore;
+    }
+
+    /**
+     * Score the current position for the player to move without looking
+     * ahead. Each window of squares as long as a winning run that only one
+     * player has tokens in counts for that player, more so the fuller it is.
+     * The game keeps this score up to date itself.
+     */
+    private int evaluate()
+    {
+        int score = game.getScore();
+        return game.getNextTurn() == Token.X ? score : -score;
+    }
+
+    /**
+     * Gets the empty cells, with the given cell first if it is one of them.
+     */
+    private int[] emptyCells(int first)
+    {
+        // Board order searches far fewer nodes than the free list's order
+        int[] cells = Arrays.copyOf(game.freeCells, game.freeCount);
+        Arrays.sort(cells);
+        if(first >= 0)
+            moveToFront(cells, first);
+        return cells;
+    }
+
+    private static void moveToFront(int[] cells, int cell)
+    {
+        for(int i=0; i<cells.length; i++)
+        {
+            if(cells[i] == cell)
+            {
+                System.arraycopy(cells, 0, cells, 1, i);
+                cells[0] = cell;
+                return;
+            }
+        }
+    }
+
+    // Wins are stored relative to the position, not the root of the search,
+    // so that the same entry is right wherever the position is reached.
+    private int toTable(int score, int ply)
+    {
+        if(score > WIN - cellCount)
+            return score + ply;
+        if(score < -WIN + cellCount)
+            return score - ply;
+        return score;
+    }
+
+    private int fromTable(int score, int ply)
+    {
+        if(score > WIN - cellCount)
+            return score - ply;
+        if(score < -WIN + cellCount)
+            return score + ply;
+        return score;
+    }
+
+    /**
+     * Outcome of a search.
+     */
+    public static class Result
+    {
+        private final Square move;
+        private final int score;
+        private final int depth;
+        private final boolean solved;
+        private final long nodes;
+        private final long elapsedNanos;
+
+        Result(Square move, int score, int depth, boolean solved, long nodes, long elapsedNanos)
+        {
+            this.move = move;
+            this.score = score;
+            this.depth = depth;
+            this.solved = solved;
+            this.nodes = nodes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Gets the best move found.
+         */
+        public Square getMove()
+        {
+            return move;
+        }
+
+        /**
+         * Gets the score of the best move for the player making it. Scores
+         * above {@code WIN - cells} are forced wins, below the negative of
+         * that are forced losses.
+         */
+        public int getScore()
+        {
+            return score;
+        }
+
+        /**
+         * Gets the number of moves ahead the search finished looking.
+         */
+        public int getDepth()
+        {
+            return depth;
+        }
+
+        /**
+         * Determine whether the score is the true outcome under perfect play
+         * rather than an estimate.
+         */
+        public boolean isSolved()
+        {
+            return solved;
+        }
+
+        public long getNodes()
+        {
+            return nodes;
+        }
+
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        public long getNodesPerSecond()
+        {
+            return elapsedNanos == 0 ? 0 : nodes * 1000000000L / elapsedNanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("[Result move=%s score=%d depth=%d solved=%b nodes=%d nps=%d]",
+                    move, score, depth, solved, nodes, getNodesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,186 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class GameSearchTest
+{
+    
+    @Test
+    public void testSolvesStandardGame()
+    {
+        // Perfect play on a standard board is a draw
+        GameSearch.Result result = new GameSearch().search(new TicTacToe(), 10000);
+        assertTrue(result.isSolved());
+        assertEquals(0, result.getScore());
+        assertEquals(9, result.getDepth());
+        
+        // Positions under other rules don't mix with it in the same table
+        GameSearch search = new GameSearch();
+        assertEquals(0, search.search(new TicTacToe(), 10000).getScore());
+        GameSearch.Result shortLines = search.search(new TicTacToe(3, 2), 10000);
+        assertTrue(shortLines.getScore() > 0);
+        assertEquals(new GameSearch().search(new TicTacToe(3, 2), 10000).getScore(), shortLines.getScore());
+        assertTrue(Zobrist.hash(new TicTacToe(3)) != Zobrist.hash(new TicTacToe(4)));
+    }
+    
+    @Test
+    public void testFindsWinAndBlock()
+    {
+        TicTacToe game = new TicTacToe();
+        game.placeToken(Token.X, 1, 1);
+        game.placeToken(Token.O, 3, 1);
+        game.placeToken(Token.X, 1, 2);
+        // O has to block the top row
+        GameSearch search = new GameSearch();
+        assertEquals(Square.of(1, 3), search.search(game, 1000).getMove());
+        
+        game.placeToken(Token.O, 2, 2);
+        game.placeToken(Token.X, 3, 3);
+        // O wins on the R->L diagonal
+        GameSearch.Result result = search.search(game, 1000);
+        assertEquals(Square.of(1, 3), result.getMove());
+        assertEquals(GameSearch.WIN - 1, result.getScore());
+        // Searching doesn't change the game
+        assertEquals(5, game.getMoveCount());
+    }
+    
+    @Test
+    public void testShortRuns()
+    {
+        // Runs shorter than the board are scored window by window: the
+        // center of a 5x5 board is in three windows of three along each line
+        TicTacToe game = new TicTacToe(5, 3);
+        game.placeToken(Token.X, 3, 3);
+        assertEquals(12, game.getScore());
+        // O blocks two of X's diagonals, and has five windows of its own
+        game.placeToken(Token.O, 2, 2);
+        assertEquals(12 - 2 - 5, game.getScore());
+        
+        // O has to stop three in a row, which a whole row wouldn't notice
+        game.placeToken(Token.X, 3, 4);
+        GameSearch.Result result = new GameSearch().search(game, 1000);
+        assertTrue(result.getMove().equals(Square.of(3, 2)) || result.getMove().equals(Square.of(3, 5)));
+    }
+    
+    @Test
+    public void testParallelSolver()
+    {
+        ParallelSolver solver = new ParallelSolver();
+        ParallelSolver.Solution solution = solver.solve(new TicTacToe());
+        assertEquals("draw", solution.getOutcome());
+        assertEquals(9, solution.getBestMoves().size());
+        
+        // After X takes a corner, O loses unless it takes the center
+        TicTacToe game = new TicTacToe();
+        game.placeToken(Token.X, 1, 1);
+        solution = solver.solve(game);
+        assertEquals("draw", solution.getOutcome());
+        assertEquals(1, solution.getBestMoves().size());
+        assertEquals(Square.of(2, 2), solution.getBestMoves().get(0));
+        assertTrue(solution.getScore(Square.of(3, 3)) < 0);
+    }
+    
+    @Test
+    public void testMonteCarloPlayer()
+    {
+        TicTacToe game = new TicTacToe();
+        game.placeToken(Token.X, 1, 1);
+        game.placeToken(Token.O, 2, 1);
+        game.placeToken(Token.X, 1, 2);
+        game.placeToken(Token.O, 2, 2);
+        MonteCarloPlayer player = new MonteCarloPlayer(2);
+        try
+        {
+            MonteCarloPlayer.Result result = player.chooseMove(game, 10000, 20000);
+            assertEquals(Square.of(1, 3), result.getMove());
+            assertEquals(20000, result.getPlayouts());
+            assertEquals(4, game.getMoveCount());
+        }
+        finally
+        {
+            player.shutdown();
+        }
+    }
+    
+    @Test
+    public void testSelfPlay()
+    {
+        // A full-depth search never loses on a standard board
+        SelfPlaySimulator simulator = new SelfPlaySimulator(3, () -> MovePolicy.search(9), MovePolicy::random);
+        SelfPlaySimulator.Statistics statistics = simulator.run(200, 2, 42);
+        assertEquals(200, statistics.getGames());
+        assertEquals(0, statistics.getOWins());
+        assertTrue(statistics.getXWins() > statistics.getDraws());
+    }
+    
+    @Test
+    public void testOpeningBook()
+    throws Exception
+    {
+        File file = File.createTempFile("book", ".bin");
+        try
+        {
+            OpeningBook.generate(3, file.toPath());
+            OpeningBook book = OpeningBook.open(file.toPath());
+            TicTacToe game = new TicTacToe();
+            assertEquals(OpeningBook.DRAW, book.getValue(game));
+            
+            // X can win at once on the top row, and does
+            game.placeToken(Token.X, 1, 1);
+            game.placeToken(Token.O, 2, 1);
+            game.placeToken(Token.X, 1, 2);
+            game.placeToken(Token.O, 3, 1);
+            assertEquals(OpeningBook.WIN, book.getValue(game));
+            assertEquals(2, book.getBestMove(game));
+            game.placeToken(Token.X, 1, 3);
+            assertEquals(OpeningBook.LOSS, book.getValue(game));
+            assertEquals(-1, book.getBestMove(game));
+            
+            // The book agrees with the search, and never loses
+            GameSearch search = new GameSearch();
+            TicTacToe position = new TicTacToe();
+            position.placeToken(Token.X, 2, 2);
+            position.placeToken(Token.O, 1, 2);
+            int score = search.search(position, 10000).getScore();
+            assertEquals(OpeningBook.WIN, book.getValue(position));
+            assertTrue(score > 0);
+            SelfPlaySimulator simulator = new SelfPlaySimulator(3, MovePolicy::random, () -> MovePolicy.book(book));
+            assertEquals(0, simulator.run(500, 2, 42).getXWins());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+    
+    @Test
+    public void testTournament()
+    {
+        List<Player> players = Arrays.asList(Player.of("random", MovePolicy::random),
+                Player.of("greedy", MovePolicy::greedy), Player.of("search", () -> MovePolicy.search(9)));
+        TournamentRunner.Standings standings = new TournamentRunner(players, new int[] { 3 }, 40).run(2, 42);
+        
+        // Each player meets the other two as X and as O, 40 games each way
+        for(int player=0; player<3; player++)
+            assertEquals(160, standings.getGames(player));
+        assertEquals(0, standings.getLosses(2));
+        assertTrue(standings.getRating(2) > standings.getRating(1));
+        assertTrue(standings.getRating(1) > standings.getRating(0));
+        assertTrue(standings.toString().contains("search"));
+        
+        // A player whose policy fails forfeits its games rather than ending the tournament
+        MovePolicy broken = (game, random) -> {
+            throw new IllegalStateException("ERROR: Broken.");
+        };
+        players = Arrays.asList(Player.of("random", MovePolicy::random), Player.of("broken", () -> broken));
+        standings = new TournamentRunner(players, new int[] { 3 }, 10).run(2, 42);
+        assertEquals(20, standings.getLosses(1));
+        assertEquals(20, standings.getGames(0));
+    }
+}
+
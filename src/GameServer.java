@@ -0,0 +1,412 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hosts many games at once for players connecting over TCP.
+ *
+ * Connections are spread over a few reactor threads, each running a
+ * non-blocking selector loop, so a handful of threads serves thousands of
+ * connections. Commands are plain text lines, one reply line each:
+ *
+ * <pre>
+ * NEW size [winLength] -> OK id                      (win length defaults to the size)
+ * MOVE id row,column   -> OK | WIN X | WIN O | DRAW  (plays whoever's turn it is)
+ * TURN id              -> TURN X | TURN O | WIN X | WIN O | DRAW
+ * BOARD id             -> BOARD size cells           (cells row by row: X, O or ~)
+ * END id               -> OK
+ * </pre>
+ *
+ * Anything that goes wrong is answered with "ERR" and a message. Games live
+ * in a {@link SessionRegistry} shared by all the reactors, and each game is
+ * locked on its own, so moves in different games never contend. Only the
+ * connection that started a game can end it, and its games end when it
+ * closes.
+ *
+ * Boards are limited to {@link #MAX_BOARD_SIZE} and each connection to
+ * {@link #MAX_GAMES_PER_CONNECTION} games at a time. A connection whose
+ * replies pile up faster than it reads them is not read from until they
+ * have been written.
+ */
+public class GameServer
+{
+    static final int MAX_BOARD_SIZE = 100;
+    static final int MAX_GAMES_PER_CONNECTION = 256;
+    private static final int MAX_LINE_LENGTH = 1024;
+    private static final int MAX_QUEUED_REPLY_BYTES = 64 * 1024;
+    private static final long CHECKPOINT_SECONDS = 5;
+
+    private final SessionRegistry sessions;
+    private final ServerSocketChannel serverChannel;
+    private final Reactor[] reactors;
+    private volatile boolean running = true;
+
+    /**
+     * Start a server.
+     *
+     * @param port Port to listen on, or 0 for any free port.
+     * @param threads Number of reactor threads.
+     */
+    public GameServer(int port, int threads, SessionRegistry sessions) throws IOException
+    {
+        this.sessions = sessions;
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(port));
+        this.reactors = new Reactor[threads];
+        for(int i=0; i<threads; i++)
+        {
+            reactors[i] = new Reactor();
+            Thread thread = new Thread(reactors[i], "game-server-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Thread acceptor = new Thread(this::acceptConnections, "game-server-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     */
+    public int getPort()
+    {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public SessionRegistry getSessions()
+    {
+        return sessions;
+    }
+
+    /**
+     * Stop accepting connections and close the open ones.
+     */
+    public void close() throws IOException
+    {
+        running = false;
+        serverChannel.close();
+        for(Reactor reactor : reactors)
+            reactor.selector.wakeup();
+    }
+
+    private void acceptConnections()
+    {
+        int next = 0;
+        while(running)
+        {
+            try
+            {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                reactors[next++ % reactors.length].register(channel);
+            }
+            catch(ClosedChannelException cce)
+            {
+                return;
+            }
+            catch(IOException ioe)
+            {
+                if(running)
+                    System.out.println(String.format("ERROR: Could not accept connection. %s", ioe.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Run a command and get the reply.
+     *
+     * @param games Games started over the same connection and not yet ended.
+     */
+    String handle(String line, LongHashSet games)
+    {
+        String[] words = line.trim().split("\\s+");
+        try
+        {
+            String command = words[0].toUpperCase();
+            if(command.equals("NEW") && (words.length == 2 || words.length == 3))
+            {
+                int size = Integer.parseInt(words[1]);
+                if(size < 1 || size > MAX_BOARD_SIZE)
+                    return String.format("ERR Invalid game board size. Expecting an integer from 1 to %d.",
+                            MAX_BOARD_SIZE);
+                int winLength = words.length == 3 ? Integer.parseInt(words[2]) : size;
+                if(winLength < 1 || winLength > size)
+                    return String.format("ERR Invalid win length. Expecting an integer from 1 to %d.", size);
+                if(games.size() >= MAX_GAMES_PER_CONNECTION)
+                    return String.format("ERR Too many games. End one of the %d first.", games.size());
+                long id = sessions.create(size, winLength).getId();
+                games.add(id);
+                return "OK " + id;
+            }
+            if(words.length < 2)
+                return "ERR Unknown command.";
+
+            long id = Long.parseLong(words[1]);
+            if(command.equals("END"))
+            {
+                if(!games.remove(id))
+                    return "ERR No such game.";
+                return sessions.remove(id) ? "OK" : "ERR No such game.";
+            }
+
+            GameSession session = sessions.get(id);
+            if(session == null)
+                return "ERR No such game.";
+            if(command.equals("MOVE") && words.length == 3)
+            {
+                String[] coords = words[2].split(",");
+                if(coords.length != 2)
+                    return "ERR Expecting row,column.";
+                return session.move(Integer.parseInt(coords[0]), Integer.parseInt(coords[1]));
+            }
+            if(command.equals("TURN"))
+                return session.turn();
+            if(command.equals("BOARD"))
+                return session.board();
+            return "ERR Unknown command.";
+        }
+        catch(NumberFormatException nfe)
+        {
+            return "ERR Expecting integers.";
+        }
+        catch(IllegalArgumentException | IllegalStateException e)
+        {
+            return "ERR " + e.getMessage();
+        }
+    }
+
+    /**
+     * End every game started over a connection.
+     */
+    void endGames(LongHashSet games)
+    {
+        games.forEach(sessions::remove);
+        games.clear();
+    }
+
+    /**
+     * One selector loop serving its share of the connections.
+     */
+    private class Reactor implements Runnable
+    {
+        final Selector selector;
+        private final ConcurrentLinkedQueue<SocketChannel> newChannels = new ConcurrentLinkedQueue<SocketChannel>();
+
+        Reactor() throws IOException
+        {
+            this.selector = Selector.open();
+        }
+
+        void register(SocketChannel channel)
+        {
+            newChannels.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while(running)
+                {
+                    selector.select();
+                    SocketChannel channel;
+                    while((channel = newChannels.poll()) != null)
+                        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while(keys.hasNext())
+                    {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection)key.attachment();
+                        try
+                        {
+                            if(key.isReadable())
+                                connection.read(key);
+                            if(key.isValid() && key.isWritable())
+                                connection.flush(key);
+                        }
+                        catch(IOException ioe)
+                        {
+                            connection.close(key);
+                        }
+                        catch(RuntimeException re)
+                        {
+                            // Only this connection is lost, not the rest on the thread
+                            System.out.println(String.format("ERROR: Closing connection. %s", re));
+                            connection.close(key);
+                        }
+                    }
+                }
+            }
+            catch(IOException ioe)
+            {
+                System.out.println(String.format("ERROR: Game server stopped. %s", ioe.getMessage()));
+            }
+            finally
+            {
+                for(SelectionKey key : selector.keys())
+                    ((Connection)key.attachment()).close(key);
+                try
+                {
+                    selector.close();
+                }
+                catch(IOException ioe) {}
+            }
+        }
+    }
+
+    /**
+     * A connected player: the bytes read but not yet answered, the replies
+     * not yet written and the games started.
+     */
+    private class Connection
+    {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(MAX_LINE_LENGTH);
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<ByteBuffer>();
+        private final LongHashSet games = new LongHashSet();
+        private int queuedBytes; // in the replies not yet written
+        private boolean held; // lines left unanswered until the replies are written
+
+        Connection(SocketChannel channel)
+        {
+            this.channel = channel;
+        }
+
+        void read(SelectionKey key) throws IOException
+        {
+            if(channel.read(in) < 0)
+            {
+                close(key);
+                return;
+            }
+            answer();
+            flush(key);
+        }
+
+        /**
+         * Answer the complete lines read so far, until the replies waiting
+         * to be written pass the limit.
+         */
+        private void answer()
+        {
+            in.flip();
+            int lineStart = 0;
+            for(int i=0; i<in.limit() && queuedBytes < MAX_QUEUED_REPLY_BYTES; i++)
+            {
+                if(in.get(i) == '\n')
+                {
+                    String line = new String(in.array(), lineStart, i - lineStart, StandardCharsets.US_ASCII);
+                    if(!line.trim().isEmpty())
+                        reply(handle(line, games));
+                    lineStart = i + 1;
+                }
+            }
+            held = queuedBytes >= MAX_QUEUED_REPLY_BYTES;
+            in.position(lineStart);
+            in.compact();
+            if(!held && !in.hasRemaining())
+            {
+                reply("ERR Line too long.");
+                in.clear();
+            }
+        }
+
+        private void reply(String reply)
+        {
+            ByteBuffer buffer = ByteBuffer.wrap((reply + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.add(buffer);
+            queuedBytes += buffer.remaining();
+        }
+
+        void flush(SelectionKey key) throws IOException
+        {
+            while(true)
+            {
+                while(!out.isEmpty())
+                {
+                    ByteBuffer buffer = out.peek();
+                    channel.write(buffer);
+                    if(buffer.hasRemaining())
+                    {
+                        // Socket is full; carry on when it has room, and
+                        // only read more once the backlog is down
+                        key.interestOps(queuedBytes < MAX_QUEUED_REPLY_BYTES
+                                ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    out.poll();
+                    queuedBytes -= buffer.limit();
+                }
+                if(!held)
+                    break;
+                answer();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void close(SelectionKey key)
+        {
+            // Games outlive the server stopping, so they can be saved
+            if(running)
+                endGames(games);
+            key.cancel();
+            try
+            {
+                channel.close();
+            }
+            catch(IOException ioe) {}
+        }
+    }
+
+    /**
+     * Run a server from the command line.
+     * Arguments: port (default 7777), number of reactor threads
+     * (default one per processor) and optionally a file to save the games
+     * in every few seconds and restore them from on the next start.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        SessionRegistry sessions = new SessionRegistry();
+        if(args.length > 2)
+        {
+            GameCheckpointer checkpointer = new GameCheckpointer(Paths.get(args[2]), sessions);
+            System.out.println(String.format("Restored %d games", checkpointer.getRestored()));
+            if(checkpointer.getDamagedFrames() > 0)
+                System.out.println(String.format("Skipped %d damaged checkpoint frames",
+                        checkpointer.getDamagedFrames()));
+            checkpointer.start(CHECKPOINT_SECONDS, System.out);
+
+            // Save the games one last time on the way out
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try
+                {
+                    checkpointer.close();
+                }
+                catch(IOException ioe)
+                {
+                    System.out.println(String.format("ERROR: Could not save checkpoint. %s", ioe.getMessage()));
+                }
+            }, "game-checkpointer-shutdown"));
+        }
+        GameServer server = new GameServer(port, threads, sessions);
+        System.out.println(String.format("Tic Tac Toe server listening on port %d", server.getPort()));
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,124 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class GameServerTest
+{
+    
+    @Test
+    public void testProtocol()
+    throws Exception
+    {
+        GameServer server = new GameServer(0, 1, new SessionRegistry());
+        LongHashSet games = new LongHashSet();
+        try
+        {
+            assertEquals("OK 1", server.handle("NEW 3", games));
+            assertEquals("TURN X", server.handle("TURN 1", games));
+            assertEquals("OK", server.handle("MOVE 1 1,1", games));
+            assertEquals("ERR ERROR: Square already occupied.", server.handle("MOVE 1 1,1", games));
+            assertTrue(server.handle("MOVE 1 4,4", games).startsWith("ERR"));
+            assertEquals("OK", server.handle("MOVE 1 2,1", games));
+            assertEquals("OK", server.handle("MOVE 1 1,2", games));
+            assertEquals("OK", server.handle("MOVE 1 2,2", games));
+            assertEquals("BOARD 3 XX~OO~~~~", server.handle("BOARD 1", games));
+            assertEquals("WIN X", server.handle("MOVE 1 1,3", games));
+            assertEquals("WIN X", server.handle("TURN 1", games));
+            assertTrue(server.handle("MOVE 1 3,3", games).startsWith("ERR"));
+            assertEquals("OK", server.handle("END 1", games));
+            assertEquals("ERR No such game.", server.handle("END 1", games));
+
+            // Once no one can win, the game is over
+            assertEquals("OK 2", server.handle("NEW 3", games));
+            String[] moves = { "1,2", "3,2", "2,3", "2,1", "3,1", "1,3", "1,1" };
+            for(String move : moves)
+                assertEquals("OK", server.handle("MOVE 2 " + move, games));
+            assertEquals("DRAW", server.handle("MOVE 2 3,3", games));
+            assertEquals("ERR ERROR: This game is over already.", server.handle("MOVE 2 2,2", games));
+            assertEquals("DRAW", server.handle("TURN 2", games));
+            assertEquals("OK", server.handle("END 2", games));
+            assertTrue(server.handle("NEW x", games).startsWith("ERR"));
+            assertTrue(server.handle("FOO", games).startsWith("ERR"));
+            assertEquals(0, server.getSessions().size());
+
+            // Boards and the number of games are limited
+            assertTrue(server.handle("NEW 1000000", games).startsWith("ERR Invalid game board size"));
+            assertTrue(server.handle("NEW 3 4", games).startsWith("ERR Invalid win length"));
+            for(int i=0; i<GameServer.MAX_GAMES_PER_CONNECTION; i++)
+                assertTrue(server.handle("NEW 3", games).startsWith("OK"));
+            assertTrue(server.handle("NEW 3", games).startsWith("ERR Too many games"));
+            assertEquals("OK", server.handle("END 3", games));
+            assertTrue(server.handle("NEW 3", games).startsWith("OK"));
+
+            // Only the connection that started a game can end it
+            LongHashSet otherGames = new LongHashSet();
+            assertEquals("ERR No such game.", server.handle("END 4", otherGames));
+            assertEquals("TURN X", server.handle("TURN 4", games));
+            assertTrue(server.handle("NEW 3", otherGames).startsWith("OK"));
+            server.endGames(games);
+            assertEquals(1, server.getSessions().size());
+            server.endGames(otherGames);
+            assertEquals(0, server.getSessions().size());
+            
+            // Closing a connection ends its games
+            try(Socket socket = new Socket("localhost", server.getPort()))
+            {
+                Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.US_ASCII));
+                out.write("NEW 3\nNEW 4\n");
+                out.flush();
+                assertTrue(in.readLine().startsWith("OK"));
+                assertTrue(in.readLine().startsWith("OK"));
+                assertEquals(2, server.getSessions().size());
+            }
+            for(int wait=0; wait<100 && server.getSessions().size() > 0; wait++)
+                Thread.sleep(10);
+            assertEquals(0, server.getSessions().size());
+            
+            // Play a few games over real connections
+            LoadGenerator.Report report = new LoadGenerator("localhost", server.getPort()).run(4, 10, 3);
+            assertTrue(report.getMoves() >= 4 * 10 * 5);
+            assertEquals(0, server.getSessions().size());
+        }
+        finally
+        {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testBackpressure()
+    throws Exception
+    {
+        GameServer server = new GameServer(0, 1, new SessionRegistry());
+        try(Socket socket = new Socket("localhost", server.getPort()))
+        {
+            // Ask for far more than fits in the reply queue before reading any
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            out.write("NEW " + GameServer.MAX_BOARD_SIZE + "\n");
+            for(int i=0; i<1000; i++)
+                out.write("BOARD 1\n");
+            out.write("TURN 1\n");
+            out.flush();
+            assertEquals("OK 1", in.readLine());
+            for(int i=0; i<1000; i++)
+                assertTrue(in.readLine().startsWith("BOARD " + GameServer.MAX_BOARD_SIZE + " ~~~"));
+            assertEquals("TURN X", in.readLine());
+        }
+        finally
+        {
+            server.close();
+        }
+    }
+}
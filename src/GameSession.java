@@ -0,0 +1,103 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * One game hosted by the {@link GameServer}.
+ *
+ * Moves lock the session itself, so moves in the same game are applied one
+ * at a time while different games never wait on each other. Showing the
+ * board reads the game's latest snapshot instead, so it never waits for or
+ * holds up a move.
+ */
+public class GameSession
+{
+    private final long id;
+    private final TicTacToe game;
+    private long version; // moves played in this session, so it changes whenever the game does
+
+    public GameSession(long id, TicTacToe game)
+    {
+        this.id = id;
+        this.game = game;
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    /**
+     * Play the next token on the specified square.
+     *
+     * @return The protocol reply: "OK" if the game goes on, "WIN X" or
+     *         "WIN O" if the move won, "DRAW" if no one can win any more,
+     *         or "ERR" and the reason if the move is not allowed. Once no
+     *         one can win, the game is over and takes no more moves.
+     */
+    public synchronized String move(int row, int column)
+    {
+        if(game.isDrawForced())
+            return "ERR " + MoveStatus.message(MoveStatus.GAME_OVER, null, game.getBoardSize());
+        int status = game.tryPlace(row, column);
+        if(MoveStatus.isPlayed(status))
+            version++;
+        if(status == MoveStatus.WIN)
+            return "WIN " + game.getWinner();
+        if(status == MoveStatus.DRAW || (status == MoveStatus.OK && game.isDrawForced()))
+            return "DRAW";
+        if(status == MoveStatus.OK)
+            return "OK";
+        return "ERR " + MoveStatus.message(status, null, game.getBoardSize());
+    }
+
+    /**
+     * Write the game as a {@link GameRecord} if it has changed since it
+     * was last saved.
+     *
+     * @param savedVersion Version returned when the game was last saved,
+     *        or -1 if it never was.
+     * @return The version of the game, which is savedVersion if nothing
+     *         was written.
+     * @throws BufferOverflowException if the record does not fit, in which
+     *         case the buffer's position is left where it was.
+     */
+    synchronized long save(ByteBuffer out, long savedVersion)
+    {
+        if(version != savedVersion)
+            GameRecord.write(game, out);
+        return version;
+    }
+
+    /**
+     * Gets the protocol reply describing whose turn it is.
+     */
+    public synchronized String turn()
+    {
+        if(game.getWinner() != null)
+            return "WIN " + game.getWinner();
+        if(game.isBoardFull() || game.isDrawForced())
+            return "DRAW";
+        return "TURN " + game.getNextTurn();
+    }
+
+    /**
+     * Gets the protocol reply showing the board: its size, then one character
+     * per square, row by row, X, O or ~ for empty.
+     */
+    public String board()
+    {
+        BoardSnapshot snapshot = game.getSnapshot();
+        int size = snapshot.getSize();
+        StringBuilder reply = new StringBuilder(size*size + 16);
+        reply.append("BOARD ").append(size).append(' ');
+        for(int row=1; row<=size; row++)
+        {
+            for(int column=1; column<=size; column++)
+            {
+                Token token = snapshot.getToken(row, column);
+                reply.append(token == null ? '~' : token.name().charAt(0));
+            }
+        }
+        return reply.toString();
+    }
+}
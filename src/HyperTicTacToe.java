@@ -0,0 +1,340 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Methods for playing Tic Tac Toe on a board of more than two dimensions,
+ * such as 4x4x4 (Qubic), where a player wins by filling any straight line
+ * of squares: along an edge direction or any diagonal of the cube.
+ *
+ * An N^d board has ((N+2)^d - N^d)/2 lines, 76 for Qubic and 520 for a
+ * 4x4x4x4 board. They are worked out once per board shape, along with the
+ * list of lines through each square, and kept as plain int arrays. A move
+ * then just bumps a counter on each line through its square, so its cost
+ * depends on how many lines pass through the square, not on the size of
+ * the board.
+ */
+public class HyperTicTacToe
+{
+    private static final ConcurrentHashMap<Long, Lines> LINES = new ConcurrentHashMap<Long, Lines>();
+
+    final int size; // squares along each side
+    final int dimensions;
+    final Lines lines;
+    final byte[] cells; // Board.EMPTY, Board.X or Board.O
+    final int[] xCounts; // X tokens in each line
+    final int[] oCounts;
+    final int[] moves; // cell played at each turn, in order
+    int moveCount;
+    int deadLines; // lines holding both tokens, which nobody can win
+    boolean isGameOver = false;
+    Token winner;
+
+    /**
+     * Create a new game.
+     *
+     * @param size Number of squares along each side of the board.
+     * @param dimensions Number of dimensions: 2 for an ordinary board,
+     *        3 for a cube and so on.
+     * @throws IllegalArgumentException if the board is too big to play on.
+     */
+    public HyperTicTacToe(int size, int dimensions)
+    {
+        if(size < 1 || dimensions < 1 || Math.pow(size, dimensions) > 1 << 24)
+            throw new IllegalArgumentException(String.format(
+                    "ERROR: A board of %d squares in %d dimensions is too big.", size, dimensions));
+        this.size = size;
+        this.dimensions = dimensions;
+        this.lines = LINES.computeIfAbsent(((long)size << 32) | dimensions, key -> new Lines(size, dimensions));
+        this.cells = new byte[lines.cellCount];
+        this.xCounts = new int[lines.lineCount];
+        this.oCounts = new int[lines.lineCount];
+        this.moves = new int[lines.cellCount];
+    }
+
+    /**
+     * Every winning line of one board shape, and the lines through each cell.
+     *
+     * Cell indexes count along the first coordinate fastest, so the square at
+     * coordinates (c1, c2, ...) counting from 0 is c1 + c2*size + c3*size^2...
+     */
+    static class Lines
+    {
+        final int cellCount;
+        final int lineCount;
+        final int[] lineCells; // cells of line i at [i*size, (i+1)*size)
+        final int[] cellLineStarts; // lines through cell c at [starts[c], starts[c+1]) of cellLines
+        final int[] cellLines;
+
+        Lines(int size, int dimensions)
+        {
+            int cellCount = 1;
+            for(int d=0; d<dimensions; d++)
+                cellCount *= size;
+            this.cellCount = cellCount;
+
+            // Each line runs in a direction whose steps are -1, 0 or +1 along
+            // each axis. Taking the first non-zero step as +1 counts each line
+            // once. Axes with step 0 can be anywhere; the others run from one
+            // side of the board to the other.
+            List<int[]> found = new ArrayList<int[]>();
+            int[] direction = new int[dimensions];
+            int directionCount = 1;
+            for(int d=0; d<dimensions; d++)
+                directionCount *= 3;
+            for(int code=1; code<directionCount; code++)
+            {
+                int first = 0;
+                for(int d=0, rest=code; d<dimensions; d++, rest/=3)
+                {
+                    direction[d] = rest % 3 - 1;
+                    if(first == 0)
+                        first = direction[d];
+                }
+                if(first != 1)
+                    continue;
+                addLines(size, dimensions, direction, found);
+            }
+
+            this.lineCount = found.size();
+            this.lineCells = new int[lineCount * size];
+            int[] linesPerCell = new int[cellCount];
+            for(int line=0; line<lineCount; line++)
+            {
+                System.arraycopy(found.get(line), 0, lineCells, line * size, size);
+                for(int cell : found.get(line))
+                    linesPerCell[cell]++;
+            }
+
+            this.cellLineStarts = new int[cellCount + 1];
+            for(int cell=0; cell<cellCount; cell++)
+                cellLineStarts[cell+1] = cellLineStarts[cell] + linesPerCell[cell];
+            this.cellLines = new int[cellLineStarts[cellCount]];
+            int[] filled = Arrays.copyOf(cellLineStarts, cellCount);
+            for(int line=0; line<lineCount; line++)
+            {
+                for(int i=0; i<size; i++)
+                {
+                    int cell = lineCells[line * size + i];
+                    cellLines[filled[cell]++] = line;
+                }
+            }
+        }
+
+        /**
+         * Add every line running in one direction.
+         */
+        private static void addLines(int size, int dimensions, int[] direction, List<int[]> found)
+        {
+            int freeAxes = 0;
+            for(int step : direction)
+                freeAxes += step == 0 ? 1 : 0;
+            int placements = 1;
+            for(int d=0; d<freeAxes; d++)
+                placements *= size;
+
+            int[] start = new int[dimensions];
+            for(int placement=0; placement<placements; placement++)
+            {
+                for(int d=0, rest=placement; d<dimensions; d++)
+                {
+                    if(direction[d] == 0)
+                    {
+                        start[d] = rest % size;
+                        rest /= size;
+                    }
+                    else
+                        start[d] = direction[d] > 0 ? 0 : size - 1;
+                }
+
+                int[] line = new int[size];
+                for(int i=0; i<size; i++)
+                {
+                    int cell = 0;
+                    for(int d=dimensions-1; d>=0; d--)
+                        cell = cell * size + start[d] + i * direction[d];
+                    line[i] = cell;
+                }
+                found.add(line);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of squares along each side of the board.
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the number of dimensions of the board.
+     */
+    public int getDimensions()
+    {
+        return dimensions;
+    }
+
+    /**
+     * Gets the number of winning lines on the board.
+     */
+    public int getLineCount()
+    {
+        return lines.lineCount;
+    }
+
+    /**
+     * Determine which token has the next turn.
+     */
+    public Token getNextTurn()
+    {
+        if(isGameOver)
+            throw new IllegalStateException(String.format("ERROR: This game is over already."));
+
+        // First turn always goes to X, then the players alternate
+        return moveCount % 2 == 0 ? Token.X : Token.O;
+    }
+
+    /**
+     * Play the current token in the specified square.
+     *
+     * @param coordinates Position of the square along each dimension,
+     *        each from 1 to the board size.
+     * @throws IllegalArgumentException
+     */
+    public void placeToken(Token token, int... coordinates)
+            throws IllegalArgumentException
+    {
+        // Make sure the right token is playing this turn
+        if(token != getNextTurn())
+            throw new IllegalArgumentException(String.format("ERROR: %s, it is not your turn.", token));
+
+        // Place the token iff the square is unoccupied
+        int cell = cell(coordinates);
+        if(cells[cell] != Board.EMPTY)
+            throw new IllegalArgumentException("ERROR: Square already occupied.");
+        play(cell);
+    }
+
+    /**
+     * Gets the cell index of a square.
+     *
+     * @throws IllegalArgumentException if the square is not on the board.
+     */
+    int cell(int... coordinates)
+    {
+        if(coordinates.length != dimensions)
+            throw new IllegalArgumentException(
+                    String.format("ERROR: Expecting %d coordinates for each square.", dimensions));
+        int cell = 0;
+        for(int d=dimensions-1; d>=0; d--)
+        {
+            if(coordinates[d] < 1 || coordinates[d] > size)
+                throw new IllegalArgumentException(String.format(
+                        "ERROR: Your chose an invalid square. Coordinates must be between 1 and %d", size));
+            cell = cell * size + coordinates[d] - 1;
+        }
+        return cell;
+    }
+
+    /**
+     * Play the next token in the specified cell, which must be empty.
+     */
+    void play(int cell)
+    {
+        Token token = moveCount % 2 == 0 ? Token.X : Token.O;
+        int[] mine = token == Token.X ? xCounts : oCounts;
+        int[] theirs = token == Token.X ? oCounts : xCounts;
+        cells[cell] = token == Token.X ? Board.X : Board.O;
+        moves[moveCount++] = cell;
+
+        for(int i=lines.cellLineStarts[cell]; i<lines.cellLineStarts[cell+1]; i++)
+        {
+            int line = lines.cellLines[i];
+            if(++mine[line] == 1 && theirs[line] > 0)
+                deadLines++;
+            if(mine[line] == size)
+                winner = token;
+        }
+        if(winner != null || moveCount == cells.length)
+            isGameOver = true;
+    }
+
+    /**
+     * Take back the last move.
+     *
+     * @return True if a move was taken back, false if the board was empty.
+     */
+    public boolean undo()
+    {
+        if(moveCount == 0)
+            return false;
+
+        int cell = moves[--moveCount];
+        int[] mine = cells[cell] == Board.X ? xCounts : oCounts;
+        int[] theirs = cells[cell] == Board.X ? oCounts : xCounts;
+        cells[cell] = Board.EMPTY;
+        for(int i=lines.cellLineStarts[cell]; i<lines.cellLineStarts[cell+1]; i++)
+        {
+            int line = lines.cellLines[i];
+            if(--mine[line] == 0 && theirs[line] > 0)
+                deadLines--;
+        }
+
+        // The game can only have been won or filled on the move just taken
+        // back, so the position before it was still in play.
+        winner = null;
+        isGameOver = false;
+        return true;
+    }
+
+    /**
+     * Gets the token on the specified square.
+     *
+     * @param coordinates Position of the square along each dimension,
+     *        each from 1 to the board size.
+     * @return The token, or null if the square is empty.
+     */
+    public Token getToken(int... coordinates)
+    {
+        byte value = cells[cell(coordinates)];
+        return value == Board.X ? Token.X : value == Board.O ? Token.O : null;
+    }
+
+    /**
+     * Gets the number of moves played so far.
+     */
+    public int getMoveCount()
+    {
+        return moveCount;
+    }
+
+    /**
+     * Gets the winner of the game.
+     * @return The winning token, or null if the game is not yet over or if no
+     *         one won.
+     */
+    public Token getWinner()
+    {
+        return winner;
+    }
+
+    /**
+     * Determine whether there are any unplayed spaces left on the board.
+     */
+    public boolean isBoardFull()
+    {
+        return moveCount == cells.length;
+    }
+
+    /**
+     * Determine whether the game can only end in a draw, because every
+     * line already holds both tokens.
+     */
+    public boolean isDrawForced()
+    {
+        return winner == null && deadLines == lines.lineCount;
+    }
+}
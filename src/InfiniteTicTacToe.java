@@ -0,0 +1,234 @@
+import java.util.Arrays;
+
+/**
+ * Methods for playing a game of k in a row on a board with no edges.
+ *
+ * Any row and column number is a square, negative ones included, so the
+ * game never fills up: it goes on until someone gets enough tokens in a
+ * row, column or diagonal. Only the squares played are stored, each as its
+ * row and column packed into a long, in one primitive hash set per token.
+ * Memory grows with the number of moves, not with the area they cover,
+ * at a little over 20 bytes per move including the move history.
+ */
+public class InfiniteTicTacToe
+{
+    int winLength; // tokens in a row needed to win
+    LongHashSet xSquares;
+    LongHashSet oSquares;
+    long[] moves; // packed square played at each turn, in order
+    int moveCount;
+    Token winner;
+
+    /**
+     * Default constructor. Create a new game of five in a row.
+     */
+    public InfiniteTicTacToe()
+    {
+        this(5);
+    }
+
+    /**
+     * Create a new game, specifying how many in a row wins.
+     *
+     * @param winLength Number of tokens in a row, column or diagonal
+     *        needed to win, at least 1.
+     * @throws IllegalArgumentException if the win length is less than 1.
+     */
+    public InfiniteTicTacToe(int winLength)
+    {
+        if(winLength < 1)
+            throw new IllegalArgumentException("ERROR: Win length must be at least 1");
+        this.winLength = winLength;
+        this.xSquares = new LongHashSet();
+        this.oSquares = new LongHashSet();
+        this.moves = new long[16];
+    }
+
+    /**
+     * Gets the number of tokens in a row needed to win.
+     */
+    public int getWinLength()
+    {
+        return this.winLength;
+    }
+
+    /**
+     * Determine which token has the next turn.
+     */
+    public Token getNextTurn()
+    {
+        if(winner != null)
+            throw new IllegalStateException(String.format("ERROR: This game is over already."));
+
+        // First turn always goes to X, then the players alternate
+        return moveCount % 2 == 0 ? Token.X : Token.O;
+    }
+
+    /**
+     * Play the current token in the specified square.
+     *
+     * @param row Row number of the space to place the token. Any number.
+     * @param column Column number of the space to place the token. Any number.
+     * @throws IllegalArgumentException
+     */
+    public void placeToken(Token token, int row, int column)
+            throws IllegalArgumentException
+    {
+        // Make sure the right token is playing this turn
+        if(token != getNextTurn())
+            throw new IllegalArgumentException(String.format("ERROR: %s, it is not your turn.", token));
+
+        // Place the token iff the square is unoccupied
+        long square = pack(row, column);
+        if(xSquares.contains(square) || oSquares.contains(square))
+            throw new IllegalArgumentException("ERROR: Square already occupied.");
+
+        squares(token).add(square);
+        if(moveCount == moves.length)
+            moves = Arrays.copyOf(moves, moveCount * 2);
+        moves[moveCount++] = square;
+
+        if(completesRun(row, column, token))
+            this.winner = token;
+    }
+
+    /**
+     * Determine whether the given token in the given square is part of a
+     * winning run, by looking along the four directions through it.
+     */
+    private boolean completesRun(int row, int column, Token token)
+    {
+        LongHashSet squares = squares(token);
+        return runLength(squares, row, column, 0, 1) >= winLength
+                || runLength(squares, row, column, 1, 0) >= winLength
+                || runLength(squares, row, column, 1, 1) >= winLength
+                || runLength(squares, row, column, 1, -1) >= winLength;
+    }
+
+    private int runLength(LongHashSet squares, int row, int column, int rowStep, int columnStep)
+    {
+        return 1 + countRun(squares, row, column, rowStep, columnStep)
+                + countRun(squares, row, column, -rowStep, -columnStep);
+    }
+
+    private int countRun(LongHashSet squares, long row, long column, int rowStep, int columnStep)
+    {
+        // Stepped in longs so a run stops at the end of the int range
+        // rather than wrapping around to the other side.
+        int count = 0;
+        row += rowStep;
+        column += columnStep;
+        while(count < winLength - 1 && row == (int)row && column == (int)column
+                && squares.contains(pack((int)row, (int)column)))
+        {
+            count++;
+            row += rowStep;
+            column += columnStep;
+        }
+        return count;
+    }
+
+    /**
+     * Take back the last move.
+     *
+     * @return True if a move was taken back, false if the board was empty.
+     */
+    public boolean undo()
+    {
+        if(moveCount == 0)
+            return false;
+
+        long square = moves[--moveCount];
+        squares(moveCount % 2 == 0 ? Token.X : Token.O).remove(square);
+
+        // The game can only have been won on the move just taken back
+        this.winner = null;
+        return true;
+    }
+
+    /**
+     * Gets the last square that was played.
+     *
+     * @return The square, or null if no one has played yet.
+     */
+    public Square getLastMove()
+    {
+        if(moveCount == 0)
+            return null;
+
+        long square = moves[moveCount-1];
+        return Square.of(rowOf(square), columnOf(square));
+    }
+
+    /**
+     * Gets the number of moves played so far.
+     */
+    public int getMoveCount()
+    {
+        return moveCount;
+    }
+
+    /**
+     * Gets the winner of the game.
+     * @return The winning token, or null if the game is not yet over.
+     */
+    public Token getWinner()
+    {
+        return this.winner;
+    }
+
+    /**
+     * Gets the token on the specified square.
+     *
+     * @return The token, or null if the square is empty.
+     */
+    public Token getToken(int row, int column)
+    {
+        long square = pack(row, column);
+        if(xSquares.contains(square))
+            return Token.X;
+        if(oSquares.contains(square))
+            return Token.O;
+        return null;
+    }
+
+    /**
+     * Clear the board to start a new game, keeping the storage of this one.
+     */
+    public void reset()
+    {
+        xSquares.clear();
+        oSquares.clear();
+        moveCount = 0;
+        winner = null;
+    }
+
+    /**
+     * Gets the approximate number of bytes used to store the board and
+     * the move history.
+     */
+    long getFootprintBytes()
+    {
+        return 8L * (xSquares.capacity() + oSquares.capacity() + moves.length);
+    }
+
+    private LongHashSet squares(Token token)
+    {
+        return token == Token.X ? xSquares : oSquares;
+    }
+
+    static long pack(int row, int column)
+    {
+        return ((long)row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    static int rowOf(long square)
+    {
+        return (int)(square >> 32);
+    }
+
+    static int columnOf(long square)
+    {
+        return (int)square;
+    }
+}
@@ -0,0 +1,112 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of how long something took, in buckets that widen as the times get
+ * longer, in the style of an HDR histogram.
+ *
+ * Each power of two is split into 8 buckets, so any time is known to within
+ * an eighth of itself whether it is 50ns or 5s, and the whole range of a long
+ * fits in under 500 counters. Recording is a couple of shifts and an
+ * increment, safe from any number of threads. Each bucket is a
+ * {@link LongAdder}, which spreads its count over more cells once threads
+ * start to contend for it, so threads timing the same thing at once don't
+ * all fight over one cache line.
+ */
+class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram()
+    {
+        for(int i=0; i<BUCKETS; i++)
+            counts[i] = new LongAdder();
+    }
+
+    /**
+     * Count one time, in nanoseconds.
+     */
+    void record(long nanos)
+    {
+        if(nanos < 0)
+            nanos = 0;
+        counts[bucket(nanos)].increment();
+        max.accumulate(nanos);
+    }
+
+    private static int bucket(long value)
+    {
+        if(value < SUB_BUCKETS)
+            return (int)value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Gets the largest time that falls in a bucket.
+     */
+    private static long highestInBucket(int bucket)
+    {
+        if(bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    long getCount()
+    {
+        long count = 0;
+        for(int i=0; i<BUCKETS; i++)
+            count += counts[i].sum();
+        return count;
+    }
+
+    long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Gets the time that the given share of the recorded times came in under,
+     * to within an eighth.
+     *
+     * @param percentile From 0 to 100.
+     * @return The time in nanoseconds, or 0 if nothing has been recorded.
+     */
+    long getValueAtPercentile(double percentile)
+    {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for(int i=0; i<BUCKETS; i++)
+        {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+        if(total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long)Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for(int i=0; i<BUCKETS; i++)
+        {
+            seen += snapshot[i];
+            if(seen >= rank)
+                return Math.min(highestInBucket(i), getMax());
+        }
+        return getMax();
+    }
+
+    void reset()
+    {
+        for(int i=0; i<BUCKETS; i++)
+            counts[i].reset();
+        max.reset();
+    }
+}
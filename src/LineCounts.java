@@ -0,0 +1,309 @@
+import java.util.Arrays;
+
+/**
+ * Running count of each token in every window of the board that could win:
+ * each run of squares as long as a winning run along a row, a column or
+ * either diagonal. When a whole row has to be filled to win, the windows are
+ * just the rows, columns and two main diagonals.
+ *
+ * Keeping the counts up to date as tokens are placed turns win detection into
+ * a check of the few windows through the square played, and lets the game
+ * notice when every window holds both tokens, at which point nobody can win
+ * any more.
+ *
+ * The counts also keep track of threats: windows one token short of being
+ * filled by a single player. Each window keeps the sum of the positions along
+ * it that are taken, so the one empty square of a threat is found without
+ * looking at the board, and the threats of each token are kept in a set that
+ * can be listed without going through every window. A static score of the
+ * position is kept up to date along with them.
+ *
+ * Windows are numbered rows first, then columns, diagonals and
+ * anti-diagonals, each by the square they start on. There are about four
+ * windows per square when runs are shorter than the board, each costing
+ * 28 bytes, but only 2*size + 2 when runs have to fill the board.
+ */
+class LineCounts
+{
+    final int size;
+    final int length; // tokens in a row needed to win
+    final int starts; // places along a line a window can start
+    final int lineCount;
+    final int[] xCounts;
+    final int[] oCounts;
+    final int[] positionSums; // sum of the positions along each window holding a token
+    final int[][] threats = new int[2][]; // windows each token is one short of filling, X first
+    final int[][] threatIndex = new int[2][]; // where each window is in threats, or -1
+    final int[] threatCounts = new int[2];
+    int deadLines; // windows holding both tokens, which nobody can win
+    int score; // sum over windows only one token is in of their count squared, for X or against
+    private final int[] cellLines; // windows through the square being counted
+    private final int[] cellPositions; // and its position along each
+
+    LineCounts(int size)
+    {
+        this(size, size);
+    }
+
+    /**
+     * @param length Number of tokens in a row needed to win, from 1 to the size.
+     */
+    LineCounts(int size, int length)
+    {
+        this.size = size;
+        this.length = length;
+        this.starts = size - length + 1;
+        this.lineCount = 2*size*starts + 2*starts*starts;
+        this.xCounts = new int[lineCount];
+        this.oCounts = new int[lineCount];
+        this.positionSums = new int[lineCount];
+        this.cellLines = new int[4*length];
+        this.cellPositions = new int[4*length];
+        for(int player=0; player<2; player++)
+        {
+            threats[player] = new int[lineCount];
+            threatIndex[player] = new int[lineCount];
+            Arrays.fill(threatIndex[player], -1);
+
+            // Windows of one square are one short while they are still empty
+            if(length == 1)
+            {
+                for(int line=0; line<lineCount; line++)
+                    addThreat(player, line);
+            }
+        }
+    }
+
+    private LineCounts(LineCounts other)
+    {
+        this.size = other.size;
+        this.length = other.length;
+        this.starts = other.starts;
+        this.lineCount = other.lineCount;
+        this.xCounts = other.xCounts.clone();
+        this.oCounts = other.oCounts.clone();
+        this.positionSums = other.positionSums.clone();
+        for(int player=0; player<2; player++)
+        {
+            this.threats[player] = other.threats[player].clone();
+            this.threatIndex[player] = other.threatIndex[player].clone();
+            this.threatCounts[player] = other.threatCounts[player];
+        }
+        this.deadLines = other.deadLines;
+        this.score = other.score;
+        this.cellLines = new int[other.cellLines.length];
+        this.cellPositions = new int[other.cellPositions.length];
+    }
+
+    /**
+     * List the windows through a square in cellLines, with the square's
+     * position along each in cellPositions.
+     *
+     * @return The number of windows.
+     */
+    private int findLines(int row, int column)
+    {
+        int count = 0;
+
+        // Rows and columns, by where the window starts
+        for(int start=Math.max(0, column-length+1), end=Math.min(column, starts-1); start<=end; start++)
+        {
+            cellLines[count] = row*starts + start;
+            cellPositions[count++] = column - start;
+        }
+        int base = size*starts;
+        for(int start=Math.max(0, row-length+1), end=Math.min(row, starts-1); start<=end; start++)
+        {
+            cellLines[count] = base + column*starts + start;
+            cellPositions[count++] = row - start;
+        }
+
+        // Diagonals, by how far along the window the square is
+        base += size*starts;
+        for(int i=Math.max(0, Math.max(row, column) - starts + 1), end=Math.min(length-1, Math.min(row, column));
+                i<=end; i++)
+        {
+            cellLines[count] = base + (row-i)*starts + column-i;
+            cellPositions[count++] = i;
+        }
+        base += starts*starts;
+        for(int i=Math.max(0, Math.max(row - starts + 1, length-1 - column)),
+                end=Math.min(length-1, Math.min(row, size-1 - column)); i<=end; i++)
+        {
+            cellLines[count] = base + (row-i)*starts + column+i - (length-1);
+            cellPositions[count++] = i;
+        }
+        return count;
+    }
+
+    /**
+     * Count a token placed on the given square.
+     *
+     * @param row Zero-based row of the square.
+     * @param column Zero-based column of the square.
+     * @return True if the token now fills a whole window.
+     */
+    boolean add(int row, int column, Token token)
+    {
+        int player = token == Token.X ? 0 : 1;
+        int[] counts = token == Token.X ? xCounts : oCounts;
+        int[] otherCounts = token == Token.X ? oCounts : xCounts;
+
+        if(player == 1)
+            score = -score;
+        boolean won = false;
+        for(int i=findLines(row, column)-1; i>=0; i--)
+            won |= add(counts, otherCounts, player, cellLines[i], cellPositions[i]);
+        if(player == 1)
+            score = -score;
+        return won;
+    }
+
+    /**
+     * Count a token in one window. The score is kept from the point of view
+     * of the player whose token it is while its windows are counted.
+     */
+    private boolean add(int[] counts, int[] otherCounts, int player, int line, int position)
+    {
+        int count = counts[line]++;
+        int other = otherCounts[line];
+        positionSums[line] += position;
+        if(other == 0)
+        {
+            score += 2*count + 1;
+            if(count == length-2)
+                addThreat(player, line);
+            else if(count == length-1)
+                removeThreat(player, line);
+        }
+        else if(count == 0)
+        {
+            deadLines++;
+            score += other*other;
+        }
+        if(count == 0 && other == length-1)
+            removeThreat(1-player, line);
+        return count+1 == length;
+    }
+
+    /**
+     * Determine whether placing a token on the given empty square would
+     * fill a whole window.
+     *
+     * @param row Zero-based row of the square.
+     * @param column Zero-based column of the square.
+     */
+    boolean wouldWin(int row, int column, Token token)
+    {
+        int[] counts = token == Token.X ? xCounts : oCounts;
+        for(int i=findLines(row, column)-1; i>=0; i--)
+        {
+            if(counts[cellLines[i]] == length-1)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Take back a token counted with {@link #add(int, int, Token)}.
+     *
+     * @param row Zero-based row of the square.
+     * @param column Zero-based column of the square.
+     */
+    void remove(int row, int column, Token token)
+    {
+        int player = token == Token.X ? 0 : 1;
+        int[] counts = token == Token.X ? xCounts : oCounts;
+        int[] otherCounts = token == Token.X ? oCounts : xCounts;
+
+        if(player == 1)
+            score = -score;
+        for(int i=findLines(row, column)-1; i>=0; i--)
+            remove(counts, otherCounts, player, cellLines[i], cellPositions[i]);
+        if(player == 1)
+            score = -score;
+    }
+
+    private void remove(int[] counts, int[] otherCounts, int player, int line, int position)
+    {
+        int count = --counts[line];
+        int other = otherCounts[line];
+        positionSums[line] -= position;
+        if(other == 0)
+        {
+            score -= 2*count + 1;
+            if(count == length-1)
+                addThreat(player, line);
+            else if(count == length-2)
+                removeThreat(player, line);
+        }
+        else if(count == 0)
+        {
+            deadLines--;
+            score -= other*other;
+        }
+        if(count == 0 && other == length-1)
+            addThreat(1-player, line);
+    }
+
+    private void addThreat(int player, int line)
+    {
+        threatIndex[player][line] = threatCounts[player];
+        threats[player][threatCounts[player]++] = line;
+    }
+
+    private void removeThreat(int player, int line)
+    {
+        // Move the last threat into the gap
+        int index = threatIndex[player][line];
+        int last = threats[player][--threatCounts[player]];
+        threats[player][index] = last;
+        threatIndex[player][last] = index;
+        threatIndex[player][line] = -1;
+    }
+
+    /**
+     * Gets the number of windows a token is one square short of filling.
+     */
+    int threatCount(Token token)
+    {
+        return threatCounts[token == Token.X ? 0 : 1];
+    }
+
+    /**
+     * Gets the empty cell that would fill one of a token's threats.
+     *
+     * @param index Which threat, from 0 to {@link #threatCount(Token)}.
+     * @return Cell index: row*size + column.
+     */
+    int threatCell(Token token, int index)
+    {
+        int line = threats[token == Token.X ? 0 : 1][index];
+        int position = length*(length-1)/2 - positionSums[line];
+        int windows = size*starts;
+        if(line < windows)
+            return (line / starts)*size + line % starts + position;
+        line -= windows;
+        if(line < windows)
+            return (line % starts + position)*size + line / starts;
+        line -= windows;
+        if(line < starts*starts)
+            return (line / starts + position)*size + line % starts + position;
+        line -= starts*starts;
+        return (line / starts + position)*size + line % starts + length-1 - position;
+    }
+
+    /**
+     * Determine whether every window holds both tokens, so the game
+     * can only end in a draw.
+     */
+    boolean isDrawForced()
+    {
+        return deadLines == lineCount;
+    }
+
+    LineCounts copy()
+    {
+        return new LineCounts(this);
+    }
+}
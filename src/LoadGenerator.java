@@ -0,0 +1,236 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Client for load testing a {@link GameServer}.
+ *
+ * Opens a number of connections, and on each one plays games of random moves
+ * back to back, timing every move from sending the command to reading the
+ * reply. Reports moves per second and latency percentiles.
+ */
+public class LoadGenerator
+{
+    private final String host;
+    private final int port;
+
+    public LoadGenerator(String host, int port)
+    {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Run the load.
+     *
+     * @param connections Number of connections, each with its own thread.
+     * @param gamesPerConnection Number of games to play on each connection.
+     * @param boardSize Size of the game boards.
+     * @return Timings of every move.
+     */
+    public Report run(int connections, int gamesPerConnection, int boardSize)
+            throws IOException, InterruptedException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(connections);
+        long start = System.nanoTime();
+        try
+        {
+            List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+            for(int i=0; i<connections; i++)
+                futures.add(pool.submit(new SimulatedClient(gamesPerConnection, boardSize, i)));
+
+            List<long[]> latencies = new ArrayList<long[]>();
+            for(Future<long[]> future : futures)
+                latencies.add(future.get());
+            return new Report(latencies, System.nanoTime() - start);
+        }
+        catch(ExecutionException ee)
+        {
+            if(ee.getCause() instanceof IOException)
+                throw (IOException)ee.getCause();
+            throw new IllegalStateException("ERROR: Load generator failed.", ee.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Plays games on one connection.
+     */
+    private class SimulatedClient implements Callable<long[]>
+    {
+        private final int games;
+        private final int boardSize;
+        private final SplittableRandom random;
+
+        SimulatedClient(int games, int boardSize, long seed)
+        {
+            this.games = games;
+            this.boardSize = boardSize;
+            this.random = new SplittableRandom(seed);
+        }
+
+        @Override
+        public long[] call() throws IOException
+        {
+            long[] latencies = new long[games * Math.min(boardSize*boardSize, 64)];
+            int count = 0;
+            try(Socket socket = new Socket(host, port))
+            {
+                socket.setTcpNoDelay(true);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                OutputStream out = socket.getOutputStream();
+
+                // Keep a copy of each game to know which squares are free
+                TicTacToe game = new TicTacToe(boardSize);
+                for(int i=0; i<games; i++)
+                {
+                    String id = expect(send(in, out, "NEW " + boardSize), "OK ").substring(3);
+                    game.reset();
+                    String reply;
+                    do
+                    {
+                        int cell = MovePolicy.randomCell(game, random);
+                        game.play(cell);
+                        long sent = System.nanoTime();
+                        reply = send(in, out, String.format("MOVE %s %d,%d", id, cell / boardSize + 1, cell % boardSize + 1));
+                        if(count == latencies.length)
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        latencies[count++] = System.nanoTime() - sent;
+                        if(reply.startsWith("ERR"))
+                            throw new IllegalStateException(String.format("ERROR: Server refused a move. %s", reply));
+                    }
+                    while(reply.equals("OK"));
+                    expect(send(in, out, "END " + id), "OK");
+                }
+            }
+            return Arrays.copyOf(latencies, count);
+        }
+
+        private String send(BufferedReader in, OutputStream out, String command) throws IOException
+        {
+            out.write((command + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String reply = in.readLine();
+            if(reply == null)
+                throw new IOException("ERROR: Server closed the connection.");
+            return reply;
+        }
+
+        private String expect(String reply, String prefix)
+        {
+            if(!reply.startsWith(prefix))
+                throw new IllegalStateException(String.format("ERROR: Unexpected reply from server. %s", reply));
+            return reply;
+        }
+    }
+
+    /**
+     * Timings of a load run.
+     */
+    public static class Report
+    {
+        private final long[] latencies; // sorted
+        private final long elapsedNanos;
+
+        Report(List<long[]> latencies, long elapsedNanos)
+        {
+            int total = 0;
+            for(long[] each : latencies)
+                total += each.length;
+            this.latencies = new long[total];
+            int offset = 0;
+            for(long[] each : latencies)
+            {
+                System.arraycopy(each, 0, this.latencies, offset, each.length);
+                offset += each.length;
+            }
+            Arrays.sort(this.latencies);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getMoves()
+        {
+            return latencies.length;
+        }
+
+        public double getMovesPerSecond()
+        {
+            return elapsedNanos == 0 ? 0 : latencies.length * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Gets the move latency that the given share of moves came in under.
+         *
+         * @param percentile From 0 to 100.
+         */
+        public long getLatencyNanos(double percentile)
+        {
+            if(latencies.length == 0)
+                return 0;
+            int index = (int)Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(index, latencies.length - 1))];
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("moves=%d movesPerSecond=%.0f p50=%dus p90=%dus p99=%dus p99.9=%dus max=%dus",
+                    getMoves(), getMovesPerSecond(), getLatencyNanos(50) / 1000, getLatencyNanos(90) / 1000,
+                    getLatencyNanos(99) / 1000, getLatencyNanos(99.9) / 1000, getLatencyNanos(100) / 1000);
+        }
+    }
+
+    /**
+     * Run a load test from the command line.
+     * Arguments: host, port, connections, games per connection, board size.
+     * With no arguments, starts a server on this machine and runs
+     * 100 connections of 100 games each on 3x3 boards against it.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if(args.length != 0 && args.length != 5)
+        {
+            System.out.println("Usage: LoadGenerator [host port connections gamesPerConnection boardSize]");
+            System.exit(1);
+        }
+
+        String host = "localhost";
+        int port;
+        int connections = 100;
+        int games = 100;
+        int boardSize = 3;
+        GameServer server = null;
+        if(args.length == 0)
+        {
+            server = new GameServer(0, Runtime.getRuntime().availableProcessors(), new SessionRegistry());
+            port = server.getPort();
+        }
+        else
+        {
+            host = args[0];
+            port = Integer.parseInt(args[1]);
+            connections = Integer.parseInt(args[2]);
+            games = Integer.parseInt(args[3]);
+            boardSize = Integer.parseInt(args[4]);
+        }
+
+        System.out.println(new LoadGenerator(host, port).run(connections, games, boardSize));
+        if(server != null)
+            server.close();
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of longs kept in a single open-addressed array, with no boxing and
+ * no entry objects: each member costs 8 bytes plus the free slots left
+ * to keep probes short.
+ *
+ * Collisions are resolved by linear probing, and removal shifts later
+ * members of the probe run back into the gap, so there are no tombstones
+ * and lookups never slow down as members come and go. Zero marks a free
+ * slot, so whether zero itself is a member is kept on the side.
+ */
+class LongHashSet
+{
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] slots;
+    private int mask;
+    private int size; // members, not counting zero
+    private boolean hasZero;
+
+    LongHashSet()
+    {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expected Number of members to make room for up front.
+     */
+    LongHashSet(int expected)
+    {
+        int capacity = MIN_CAPACITY;
+        while(capacity * 3 / 4 < expected)
+            capacity <<= 1;
+        this.slots = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    private LongHashSet(LongHashSet other)
+    {
+        this.slots = other.slots.clone();
+        this.mask = other.mask;
+        this.size = other.size;
+        this.hasZero = other.hasZero;
+    }
+
+    /**
+     * @return True if the value was not already in the set.
+     */
+    boolean add(long value)
+    {
+        if(value == 0)
+        {
+            boolean added = !hasZero;
+            hasZero = true;
+            return added;
+        }
+
+        int slot = slotFor(value);
+        while(slots[slot] != 0)
+        {
+            if(slots[slot] == value)
+                return false;
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = value;
+        if(++size > slots.length * 3 / 4)
+            grow();
+        return true;
+    }
+
+    boolean contains(long value)
+    {
+        if(value == 0)
+            return hasZero;
+
+        int slot = slotFor(value);
+        while(slots[slot] != 0)
+        {
+            if(slots[slot] == value)
+                return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return True if the value was in the set.
+     */
+    boolean remove(long value)
+    {
+        if(value == 0)
+        {
+            boolean removed = hasZero;
+            hasZero = false;
+            return removed;
+        }
+
+        int slot = slotFor(value);
+        while(slots[slot] != value)
+        {
+            if(slots[slot] == 0)
+                return false;
+            slot = (slot + 1) & mask;
+        }
+
+        // Move back any later member of the run that could not be found
+        // across the gap, which is any whose home slot is not between
+        // the gap and where it sits now.
+        int gap = slot;
+        for(int next = (gap + 1) & mask; slots[next] != 0; next = (next + 1) & mask)
+        {
+            int home = slotFor(slots[next]);
+            if(((next - home) & mask) >= ((next - gap) & mask))
+            {
+                slots[gap] = slots[next];
+                gap = next;
+            }
+        }
+        slots[gap] = 0;
+        size--;
+        return true;
+    }
+
+    int size()
+    {
+        return hasZero ? size + 1 : size;
+    }
+
+    /**
+     * Pass each member to an action, in no particular order. The action
+     * must not change the set.
+     */
+    void forEach(LongConsumer action)
+    {
+        if(hasZero)
+            action.accept(0);
+        for(long value : slots)
+        {
+            if(value != 0)
+                action.accept(value);
+        }
+    }
+
+    void clear()
+    {
+        Arrays.fill(slots, 0);
+        size = 0;
+        hasZero = false;
+    }
+
+    /**
+     * Gets the length of the slot array, for judging memory use.
+     */
+    int capacity()
+    {
+        return slots.length;
+    }
+
+    LongHashSet copy()
+    {
+        return new LongHashSet(this);
+    }
+
+    private void grow()
+    {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        mask = slots.length - 1;
+        for(long value : old)
+        {
+            if(value == 0)
+                continue;
+            int slot = slotFor(value);
+            while(slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            slots[slot] = value;
+        }
+    }
+
+    /**
+     * Spread the bits of a value over its home slot, since neighbouring
+     * squares differ only in their low bits.
+     */
+    private int slotFor(long value)
+    {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int)(hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,315 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computer opponent for boards too big to search exhaustively.
+ *
+ * Moves are chosen by Monte Carlo tree search: play many games out at
+ * random from the current position, growing a tree of the most promising
+ * lines and steering further playouts toward them with the UCT formula.
+ * Each thread grows its own tree on its own copy of the game, and the
+ * visit counts of the first moves are added up across trees at the end
+ * (root parallelism), so threads never wait on each other.
+ */
+public class MonteCarloPlayer
+{
+    private static final double EXPLORATION = Math.sqrt(2);
+    private static final int MOVES_PER_CLOCK_CHECK = 1024; // moves played between looks at the clock
+
+    private final ExecutorService pool;
+    private final int trees;
+
+    /**
+     * Create a player that grows one tree per available processor.
+     */
+    public MonteCarloPlayer()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a player.
+     *
+     * @param threads Number of trees to grow at once, each on its own thread.
+     */
+    public MonteCarloPlayer(int threads)
+    {
+        this.trees = threads;
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "monte-carlo");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Find a good move for the player whose turn it is.
+     *
+     * @param game Game to play. It is not changed.
+     * @param timeBudgetMillis How long to think for.
+     * @param maxPlayouts Stop early after this many playouts in total.
+     * @return The move with the most visits, with statistics.
+     * @throws IllegalStateException if the game is already over.
+     */
+    public Result chooseMove(TicTacToe game, long timeBudgetMillis, long maxPlayouts)
+    {
+        if(game.isGameOver || game.getMoveCount() == game.moves.length)
+            throw new IllegalStateException("ERROR: This game is over already.");
+
+        long start = System.nanoTime();
+        long deadline = start + timeBudgetMillis * 1000000L;
+        List<Future<Node>> futures = new ArrayList<Future<Node>>();
+        for(int i=0; i<trees; i++)
+        {
+            long playouts = maxPlayouts / trees + (i < maxPlayouts % trees ? 1 : 0);
+            futures.add(pool.submit(new TreeSearch(game.copy(), deadline, playouts, start + i)));
+        }
+
+        // Add up the visits to each first move across all the trees
+        int[] visits = new int[game.moves.length];
+        double[] wins = new double[game.moves.length];
+        long playouts = 0;
+        try
+        {
+            for(Future<Node> future : futures)
+            {
+                Node root = future.get();
+                playouts += root.visits;
+                for(Node child : root.children)
+                {
+                    visits[child.move] += child.visits;
+                    wins[child.move] += child.wins;
+                }
+            }
+        }
+        catch(InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ERROR: Interrupted while thinking.", ie);
+        }
+        catch(ExecutionException ee)
+        {
+            throw new IllegalStateException("ERROR: Monte Carlo search failed.", ee.getCause());
+        }
+
+        int best = -1;
+        for(int cell=0; cell<visits.length; cell++)
+        {
+            if(visits[cell] > 0 && (best < 0 || visits[cell] > visits[best]))
+                best = cell;
+        }
+        if(best < 0)
+            best = anyEmptyCell(game);
+
+        int size = game.getBoardSize();
+        return new Result(Square.of(best/size + 1, best%size + 1),
+                visits[best] == 0 ? 0.5 : wins[best] / visits[best],
+                playouts, System.nanoTime() - start);
+    }
+
+    /**
+     * Stop the worker threads. The player can't be used afterwards.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    private static int anyEmptyCell(TicTacToe game)
+    {
+        if(game.isBoardFull())
+            throw new IllegalStateException("ERROR: Board is full.");
+        return game.freeCells[0];
+    }
+
+    /**
+     * A position in the search tree, reached by playing {@link #move}.
+     */
+    private static class Node
+    {
+        final Node parent;
+        final int move;
+        final List<Node> children = new ArrayList<Node>();
+        int[] untried; // moves not yet expanded, built on first visit
+        int untriedCount;
+        int visits;
+        double wins; // for the player who made the move into this node
+
+        Node(Node parent, int move)
+        {
+            this.parent = parent;
+            this.move = move;
+        }
+
+        Node select()
+        {
+            double logVisits = Math.log(visits);
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for(Node child : children)
+            {
+                double value = child.wins / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if(value > bestValue)
+                {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Grows one tree until the deadline or its share of the playouts.
+     */
+    private static class TreeSearch implements Callable<Node>
+    {
+        private final TicTacToe game;
+        private final long deadline;
+        private final long maxPlayouts;
+        private final SplittableRandom random;
+        private final int rootMoveCount;
+
+        TreeSearch(TicTacToe game, long deadline, long maxPlayouts, long seed)
+        {
+            this.game = game;
+            this.deadline = deadline;
+            this.maxPlayouts = maxPlayouts;
+            this.random = new SplittableRandom(seed);
+            this.rootMoveCount = game.getMoveCount();
+        }
+
+        @Override
+        public Node call()
+        {
+            Node root = new Node(null, -1);
+            long moves = MOVES_PER_CLOCK_CHECK; // played since the clock was last read
+            for(long playout=0; playout<maxPlayouts; playout++)
+            {
+                // Read the clock by the work done, not the playouts, since
+                // a playout on a big board plays thousands of moves
+                if(moves >= MOVES_PER_CLOCK_CHECK)
+                {
+                    if(System.nanoTime() > deadline)
+                        break;
+                    moves = 0;
+                }
+
+                // Follow the most promising line down to a node with untried moves
+                Node node = root;
+                while(!isOver() && node.untried != null && node.untriedCount == 0)
+                {
+                    node = node.select();
+                    game.play(node.move);
+                }
+
+                // Add one new node below it
+                if(!isOver())
+                {
+                    if(node.untried == null)
+                    {
+                        node.untried = Arrays.copyOf(game.freeCells, game.freeCount);
+                        node.untriedCount = game.freeCount;
+                    }
+                    int pick = random.nextInt(node.untriedCount);
+                    int move = node.untried[pick];
+                    node.untried[pick] = node.untried[--node.untriedCount];
+                    Node child = new Node(node, move);
+                    node.children.add(child);
+                    node = child;
+                    game.play(move);
+                }
+
+                // Play the rest of the game at random
+                while(!isOver())
+                    game.play(game.randomLegalMove(random));
+                Token winner = game.getWinner();
+
+                // Score the result back up the line, each node from the
+                // point of view of the player who moved into it
+                for(; node != null; node = node.parent)
+                {
+                    node.visits++;
+                    if(winner == null)
+                        node.wins += 0.5;
+                    else if(node != root && game.getBoard().get(node.move) == winner)
+                        node.wins += 1;
+                }
+                moves += game.getMoveCount() - rootMoveCount;
+                while(game.getMoveCount() > rootMoveCount)
+                    game.unplay();
+            }
+            return root;
+        }
+
+        private boolean isOver()
+        {
+            return game.isGameOver || game.isDrawForced();
+        }
+    }
+
+    /**
+     * Outcome of a Monte Carlo search.
+     */
+    public static class Result
+    {
+        private final Square move;
+        private final double winRate;
+        private final long playouts;
+        private final long elapsedNanos;
+
+        Result(Square move, double winRate, long playouts, long elapsedNanos)
+        {
+            this.move = move;
+            this.winRate = winRate;
+            this.playouts = playouts;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Gets the move chosen.
+         */
+        public Square getMove()
+        {
+            return move;
+        }
+
+        /**
+         * Gets the share of playouts through the chosen move that the player
+         * making it went on to win, counting draws as half.
+         */
+        public double getWinRate()
+        {
+            return winRate;
+        }
+
+        public long getPlayouts()
+        {
+            return playouts;
+        }
+
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        public long getPlayoutsPerSecond()
+        {
+            return elapsedNanos == 0 ? 0 : playouts * 1000000000L / elapsedNanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("[Result move=%s winRate=%.3f playouts=%d playoutsPerSecond=%d]",
+                    move, winRate, playouts, getPlayoutsPerSecond());
+        }
+    }
+}
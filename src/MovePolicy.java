@@ -0,0 +1,75 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A way of choosing moves for a computer player.
+ *
+ * Policies may keep state between moves, so each thread should have its
+ * own instance.
+ */
+public interface MovePolicy
+{
+    /**
+     * Choose a move for the player whose turn it is.
+     *
+     * @param game Game to move in. It is still in play, and must be left as
+     *        it was found.
+     * @param random Source of randomness for this thread.
+     * @return Cell index of an empty square: (row-1)*size + (column-1).
+     */
+    int chooseMove(TicTacToe game, SplittableRandom random);
+
+    /**
+     * Plays any empty square, each with equal chance.
+     */
+    static MovePolicy random()
+    {
+        return MovePolicy::randomCell;
+    }
+
+    /**
+     * Completes a line if it can, otherwise blocks the opponent from
+     * completing one, otherwise plays at random.
+     */
+    static MovePolicy greedy()
+    {
+        return (game, random) -> {
+            Token player = game.getNextTurn();
+            int cell = game.findWinningMove(player);
+            if(cell < 0)
+                cell = game.findForcedBlock(player);
+            return cell >= 0 ? cell : randomCell(game, random);
+        };
+    }
+
+    /**
+     * Plays the move {@link GameSearch} finds looking the given number
+     * of moves ahead.
+     */
+    static MovePolicy search(int depth)
+    {
+        GameSearch search = new GameSearch(new TranspositionTable(1 << 16));
+        return (game, random) -> {
+            Square square = search.search(game, depth, TimeUnit.DAYS.toMillis(1)).getMove();
+            return (square.getRow()-1)*game.getBoardSize() + square.getColumn()-1;
+        };
+    }
+
+    /**
+     * Plays the best move from an opening book, which must be for the
+     * size of board being played. Books are read-only, so one can be
+     * shared by every thread.
+     */
+    static MovePolicy book(OpeningBook book)
+    {
+        return (game, random) -> book.getBestMove(game);
+    }
+
+    /**
+     * Gets a random empty cell.
+     */
+    static int randomCell(TicTacToe game, SplittableRandom random)
+    {
+        return game.randomLegalMove(random);
+    }
+}
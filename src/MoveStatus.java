@@ -0,0 +1,61 @@
+/**
+ * What came of trying a move with {@link TicTacToe#tryPlace}.
+ *
+ * Statuses are plain ints rather than an enum or exceptions, so computer
+ * players can try out as many moves as they like without allocating.
+ * {@link #OK}, {@link #WIN} and {@link #DRAW} mean the move was played;
+ * the others say why it wasn't.
+ */
+public final class MoveStatus
+{
+    /** The move was played and the game goes on. */
+    public static final int OK = 0;
+    /** The move was played and won the game. */
+    public static final int WIN = 1;
+    /** The move was played and filled the board without anyone winning. */
+    public static final int DRAW = 2;
+    /** The square already holds a token. */
+    public static final int OCCUPIED = 3;
+    /** The square is not on the board. */
+    public static final int OUT_OF_RANGE = 4;
+    /** The token played is not the one whose turn it is. */
+    public static final int WRONG_TURN = 5;
+    /** The game is already over. */
+    public static final int GAME_OVER = 6;
+
+    private MoveStatus()
+    {
+    }
+
+    /**
+     * Determine whether a status means the move was played.
+     */
+    public static boolean isPlayed(int status)
+    {
+        return status <= DRAW;
+    }
+
+    /**
+     * Gets the message explaining why a move was not played, the same one
+     * {@link TicTacToe#placeToken} puts in its exceptions.
+     *
+     * @param token Token that tried to move.
+     * @param boardSize Size of the board it tried to move on.
+     */
+    public static String message(int status, Token token, int boardSize)
+    {
+        switch(status)
+        {
+            case OCCUPIED:
+                return "ERROR: Square already occupied.";
+            case OUT_OF_RANGE:
+                return String.format("ERROR: Your chose an invalid square. Row and column must be between 1 and %d", boardSize);
+            case WRONG_TURN:
+                return String.format("ERROR: %s, it is not your turn.", token);
+            case GAME_OVER:
+                return "ERROR: This game is over already.";
+            default:
+                throw new IllegalArgumentException(String.format("ERROR: Status %d is not a refusal.", status));
+        }
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The solved value and best move of every position reachable in a game on a
+ * small board, worked out ahead of time and kept in a file.
+ *
+ * The file holds 2 bits for every way of filling the board, four to a byte:
+ * the value of the position for the player to move, or 0 if it can't be
+ * reached. Positions are indexed by reading the board as a base 3 number:
+ * cell i contributes 3^i times 1 for X or 2 for O, so a lookup is one read
+ * of the memory-mapped file, with nothing allocated. The best move is found
+ * by looking up the position after each empty square is played. A 3x3 book
+ * takes 5KB and a 4x4 book 11MB, most of which is never paged in.
+ *
+ * Mirror images and rotations of a position are not merged into one entry.
+ * Doing so would shrink the book by up to 8 times, but canonical forms have
+ * no dense numbering, so the book would need a searched table of them and
+ * every lookup would have to transform the board 8 ways first.
+ *
+ * Books cover whole-line games on boards of up to 4x4.
+ */
+public class OpeningBook
+{
+    /** Value of a position the player to move can force a win from. */
+    public static final int WIN = 1;
+    /** Value of a position where best play on both sides ends in a draw. */
+    public static final int DRAW = 2;
+    /** Value of a position the player to move loses against best play. */
+    public static final int LOSS = 3;
+
+    static final int MAX_SIZE = 4;
+    private static final byte[] HEADER = { 'T', 'T', 'T', 'B', 2 };
+
+    private final int size;
+    private final int[] powers; // 3^cell
+    private final ByteBuffer entries;
+
+    private OpeningBook(int size, ByteBuffer entries)
+    {
+        this.size = size;
+        this.powers = powersOfThree(size);
+        this.entries = entries;
+    }
+
+    /**
+     * Solve every reachable position on a board of the given size and write
+     * the book to a file.
+     *
+     * @throws IllegalArgumentException if the board is bigger than 4x4.
+     */
+    public static void generate(int size, Path file) throws IOException
+    {
+        if(size < 1 || size > MAX_SIZE)
+            throw new IllegalArgumentException(
+                    String.format("ERROR: Opening books can be made for boards of 1 to %d rows/columns.", MAX_SIZE));
+
+        int[] powers = powersOfThree(size);
+        byte[] entries = new byte[packedLength(size)];
+        solve(new TicTacToe(size), 0, powers, entries);
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER.length + 1);
+            header.put(HEADER).put((byte)size);
+            header.flip();
+            ByteBuffer body = ByteBuffer.wrap(entries);
+            while(header.hasRemaining() || body.hasRemaining())
+                channel.write(new ByteBuffer[] { header, body });
+        }
+    }
+
+    /**
+     * Work out the entry for a position and everything reachable from it.
+     * Every move is looked at, with no pruning, so that every reachable
+     * position ends up in the book.
+     *
+     * @return The value of the position.
+     */
+    private static int solve(TicTacToe game, int index, int[] powers, byte[] entries)
+    {
+        int value = entry(entries, index);
+        if(value != 0)
+            return value;
+
+        if(game.getWinner() != null)
+            value = LOSS; // the player who just moved won
+        else if(game.getMoveCount() == game.moves.length)
+            value = DRAW;
+        else
+        {
+            // Best is the lowest value
+            int digit = game.getMoveCount() % 2 == 0 ? 1 : 2;
+            value = LOSS;
+            for(int cell=0; cell<game.moves.length; cell++)
+            {
+                if(game.getBoard().get(cell) != null)
+                    continue;
+                game.play(cell);
+                value = Math.min(value, 4 - solve(game, index + digit*powers[cell], powers, entries)); // WIN <-> LOSS
+                game.unplay();
+            }
+        }
+        entries[index >>> 2] |= value << 2*(index & 3);
+        return value;
+    }
+
+    private static int entry(byte[] entries, int index)
+    {
+        return entries[index >>> 2] >>> 2*(index & 3) & 3;
+    }
+
+    private int entry(int index)
+    {
+        return entries.get(index >>> 2) >>> 2*(index & 3) & 3;
+    }
+
+    /**
+     * Gets the number of bytes taken by the entries of a book.
+     */
+    private static int packedLength(int size)
+    {
+        return (powersOfThree(size)[size*size] + 3) / 4;
+    }
+
+    /**
+     * Open a book written by {@link #generate(int, Path)}.
+     *
+     * @throws IllegalStateException if the file is not an opening book.
+     */
+    public static OpeningBook open(Path file) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int size = mapped.limit() > HEADER.length ? mapped.get(HEADER.length) : 0;
+            for(int i=0; i<HEADER.length && size > 0; i++)
+            {
+                if(mapped.get(i) != HEADER[i])
+                    size = 0;
+            }
+            if(size < 1 || size > MAX_SIZE || mapped.limit() != HEADER.length + 1 + packedLength(size))
+                throw new IllegalStateException("ERROR: Not an opening book.");
+
+            mapped.position(HEADER.length + 1);
+            return new OpeningBook(size, mapped.slice());
+        }
+    }
+
+    /**
+     * Gets the number of rows or columns of the boards in this book.
+     */
+    public int getBoardSize()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the value of a game's position for the player to move.
+     *
+     * @return {@link #WIN}, {@link #DRAW} or {@link #LOSS}, or 0 if the
+     *         position cannot be reached in play.
+     * @throws IllegalArgumentException if the game is not the kind in this book.
+     */
+    public int getValue(TicTacToe game)
+    {
+        return entry(index(game));
+    }
+
+    /**
+     * Gets the best move in a game's position.
+     *
+     * @return Cell index of the best square: (row-1)*size + (column-1),
+     *         or -1 if the game is over or the position cannot be reached.
+     * @throws IllegalArgumentException if the game is not the kind in this book.
+     */
+    public int getBestMove(TicTacToe game)
+    {
+        int index = index(game);
+        if(entry(index) == 0 || game.getWinner() != null || game.getMoveCount() == size*size)
+            return -1;
+
+        // Look for the move that leaves the other player worst off, and
+        // among wins, one that wins straight away
+        Token token = game.getNextTurn();
+        int digit = token == Token.X ? 1 : 2;
+        int bestCell = -1;
+        int bestValue = 0;
+        for(int cell=0; cell<size*size; cell++)
+        {
+            if(game.getBoard().get(cell) != null)
+                continue;
+            if(game.wouldWin(cell, token))
+                return cell;
+            int value = entry(index + digit*powers[cell]);
+            if(value > bestValue)
+            {
+                bestValue = value;
+                bestCell = cell;
+            }
+        }
+        return bestCell;
+    }
+
+    private int index(TicTacToe game)
+    {
+        if(game.getBoardSize() != size || game.getWinLength() != size)
+            throw new IllegalArgumentException(
+                    String.format("ERROR: This opening book is for whole-line games on %dx%d boards.", size, size));
+
+        Board board = game.getBoard();
+        int index = 0;
+        for(int cell=0; cell<size*size; cell++)
+        {
+            Token token = board.get(cell);
+            if(token != null)
+                index += (token == Token.X ? 1 : 2) * powers[cell];
+        }
+        return index;
+    }
+
+    private static int[] powersOfThree(int size)
+    {
+        int[] powers = new int[size*size + 1];
+        powers[0] = 1;
+        for(int i=1; i<powers.length; i++)
+            powers[i] = powers[i-1] * 3;
+        return powers;
+    }
+
+    /**
+     * Make a book from the command line.
+     * Arguments: board size and the file to write.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length != 2)
+        {
+            System.out.println("Usage: OpeningBook size file");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        generate(Integer.parseInt(args[0]), Paths.get(args[1]));
+        System.out.println(String.format("Wrote %s in %.1fs", args[1], (System.nanoTime() - start) / 1e9));
+    }
+}
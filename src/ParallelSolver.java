@@ -0,0 +1,378 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Works out the exact outcome of a game under perfect play, using every core.
+ *
+ * The game tree is split into tasks for a {@link ForkJoinPool} over the first
+ * few moves. Every first move gets its own task, so each one gets an exact
+ * score. Below that, a split position searches its first move on its own and
+ * hands the rest to the pool with the bounds that move established, so the
+ * pruning that move earns isn't lost. Past the split depth each task runs an
+ * ordinary {@link GameSearch} to the end of the game. All tasks share one
+ * {@link TranspositionTable}, so a position solved by one worker is known to
+ * the rest. Within the split depth, moves that lead to rotations or mirror
+ * images of each other are only searched once.
+ */
+public class ParallelSolver
+{
+    private static final int DEFAULT_SPLIT_DEPTH = 3;
+    private static final int DEFAULT_TABLE_ENTRIES = 1 << 22;
+    private static final int SPEEDUP_RUNS = 5;
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    private final int splitDepth;
+    private final LongAdder nodes = new LongAdder();
+
+    /**
+     * Create a solver that uses the common pool and its own table.
+     */
+    public ParallelSolver()
+    {
+        this(ForkJoinPool.commonPool(), new TranspositionTable(DEFAULT_TABLE_ENTRIES), DEFAULT_SPLIT_DEPTH);
+    }
+
+    /**
+     * Create a solver.
+     *
+     * @param pool Pool to run the search on.
+     * @param table Table shared by all the workers.
+     * @param splitDepth Number of moves ahead the tree is split into tasks.
+     *        Must be at least 1.
+     */
+    public ParallelSolver(ForkJoinPool pool, TranspositionTable table, int splitDepth)
+    {
+        this.pool = pool;
+        this.table = table;
+        this.splitDepth = splitDepth;
+    }
+
+    /**
+     * Solve the game from its current position.
+     *
+     * @param game Game to solve. It is not changed.
+     * @return The outcome for the player to move, and the score of each move.
+     * @throws IllegalStateException if the game is already over.
+     */
+    public Solution solve(TicTacToe game)
+    {
+        if(game.isGameOver || game.getMoveCount() == game.moves.length)
+            throw new IllegalStateException("ERROR: This game is over already.");
+
+        long start = System.nanoTime();
+        nodes.reset();
+
+        // Score every first move exactly, so all the best ones can be reported.
+        // Moves equivalent by symmetry share the score of the first of them.
+        int size = game.getBoardSize();
+        Symmetry symmetry = Symmetry.forSize(size);
+        byte[] board = game.getBoard().getCells();
+        SolveTask[] tasks = new SolveTask[board.length];
+        int moveCount = 0;
+        for(int cell=0; cell<board.length; cell++)
+        {
+            if(board[cell] != Board.EMPTY)
+                continue;
+            moveCount++;
+            if(symmetry.representative(board, cell) == cell)
+            {
+                tasks[cell] = new SolveTask(game, cell, -GameSearch.WIN - 1, GameSearch.WIN + 1, 0);
+                pool.execute(tasks[cell]);
+            }
+        }
+
+        int[] cells = new int[moveCount];
+        int[] scores = new int[moveCount];
+        int move = 0;
+        for(int cell=0; cell<board.length; cell++)
+        {
+            if(board[cell] != Board.EMPTY)
+                continue;
+            cells[move] = cell;
+            scores[move++] = tasks[symmetry.representative(board, cell)].join();
+        }
+        return new Solution(size, cells, scores, nodes.sum(), System.nanoTime() - start);
+    }
+
+    /**
+     * Solve the game from its current position on a pool of one thread and
+     * on a pool as big as this solver's, each with an empty table of the same
+     * size as this solver's, and report how much faster the bigger pool was.
+     * Both split the work and skip symmetric moves the same way, so only the
+     * number of threads differs. Both pools are new, since the common pool
+     * also runs tasks on the thread waiting for them. The two take turns
+     * several times and the fastest run of each counts, so neither pays for
+     * warming up the JIT.
+     */
+    public Speedup measureSpeedup(TicTacToe game)
+    {
+        int entries = table.getCapacity();
+        int threads = pool.getParallelism();
+        long sequentialNanos = Long.MAX_VALUE;
+        long parallelNanos = Long.MAX_VALUE;
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool parallel = new ForkJoinPool(threads);
+        try
+        {
+            for(int run=0; run<SPEEDUP_RUNS; run++)
+            {
+                Solution solution = new ParallelSolver(single, new TranspositionTable(entries), splitDepth).solve(game);
+                sequentialNanos = Math.min(sequentialNanos, solution.getElapsedNanos());
+                solution = new ParallelSolver(parallel, new TranspositionTable(entries), splitDepth).solve(game);
+                parallelNanos = Math.min(parallelNanos, solution.getElapsedNanos());
+            }
+        }
+        finally
+        {
+            single.shutdown();
+            parallel.shutdown();
+        }
+        return new Speedup(threads, sequentialNanos, parallelNanos);
+    }
+
+    /**
+     * Scores one move for the player making it.
+     */
+    private class SolveTask extends RecursiveTask<Integer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final TicTacToe game;
+        private final int cell;
+        private final int alpha;
+        private final int beta;
+        private final int ply;
+
+        /**
+         * @param game Position before the move. The task works on its own copy.
+         */
+        SolveTask(TicTacToe game, int cell, int alpha, int beta, int ply)
+        {
+            this.game = game;
+            this.cell = cell;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.ply = ply;
+        }
+
+        @Override
+        protected Integer compute()
+        {
+            TicTacToe position = game.copy();
+            position.play(cell);
+
+            if(position.winner != null)
+                return GameSearch.WIN - ply - 1;
+            if(position.getMoveCount() == position.moves.length || position.isDrawForced())
+                return 0;
+            if(ply + 1 < splitDepth)
+                return -split(position, -beta, -alpha, ply + 1);
+
+            GameSearch search = new GameSearch(table);
+            int score = -search.solve(position, -beta, -alpha, ply + 1);
+            nodes.add(search.getNodes());
+            return score;
+        }
+    }
+
+    /**
+     * Score a position for the player to move, searching the first move
+     * here and the rest as parallel tasks. Symmetric moves are skipped.
+     */
+    private int split(TicTacToe position, int alpha, int beta, int ply)
+    {
+        nodes.increment();
+        int bestScore = -GameSearch.WIN - 1;
+        boolean first = true;
+        List<SolveTask> rest = new ArrayList<SolveTask>();
+        Symmetry symmetry = Symmetry.forSize(position.getBoardSize());
+        byte[] board = position.getBoard().getCells();
+        for(int cell=0; cell<board.length; cell++)
+        {
+            if(board[cell] != Board.EMPTY || symmetry.representative(board, cell) != cell)
+                continue;
+
+            if(first)
+            {
+                first = false;
+                bestScore = new SolveTask(position, cell, alpha, beta, ply).compute();
+                if(bestScore > alpha)
+                    alpha = bestScore;
+                if(alpha >= beta)
+                    return bestScore;
+            }
+            else
+                rest.add(new SolveTask(position, cell, alpha, beta, ply));
+        }
+
+        for(SolveTask task : RecursiveTask.invokeAll(rest))
+            bestScore = Math.max(bestScore, task.join());
+        return bestScore;
+    }
+
+    /**
+     * Exact outcome of a position.
+     */
+    public static class Solution
+    {
+        private final int boardSize;
+        private final int[] cells;
+        private final int[] scores;
+        private final long nodes;
+        private final long elapsedNanos;
+
+        Solution(int boardSize, int[] cells, int[] scores, long nodes, long elapsedNanos)
+        {
+            this.boardSize = boardSize;
+            this.cells = cells;
+            this.scores = scores;
+            this.nodes = nodes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Gets the score of the position for the player to move: above zero
+         * is a forced win, below zero a forced loss, zero a draw.
+         */
+        public int getScore()
+        {
+            int best = -GameSearch.WIN - 1;
+            for(int score : scores)
+                best = Math.max(best, score);
+            return best;
+        }
+
+        /**
+         * Gets the outcome for the player to move as a word: win, loss or draw.
+         */
+        public String getOutcome()
+        {
+            int score = getScore();
+            return score > 0 ? "win" : score < 0 ? "loss" : "draw";
+        }
+
+        /**
+         * Gets every move that achieves the best score.
+         */
+        public List<Square> getBestMoves()
+        {
+            int best = getScore();
+            List<Square> moves = new ArrayList<Square>();
+            for(int i=0; i<cells.length; i++)
+            {
+                if(scores[i] == best)
+                    moves.add(Square.of(cells[i]/boardSize + 1, cells[i]%boardSize + 1));
+            }
+            return moves;
+        }
+
+        /**
+         * Gets the exact score of playing the given square.
+         *
+         * @throws IllegalArgumentException if the square is not a legal move.
+         */
+        public int getScore(Square square)
+        {
+            int cell = (square.getRow()-1)*boardSize + square.getColumn()-1;
+            for(int i=0; i<cells.length; i++)
+            {
+                if(cells[i] == cell)
+                    return scores[i];
+            }
+            throw new IllegalArgumentException(String.format("ERROR: %s is not a legal move.", square));
+        }
+
+        public long getNodes()
+        {
+            return nodes;
+        }
+
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("[Solution outcome=%s bestMoves=%s nodes=%d millis=%d]",
+                    getOutcome(), getBestMoves(), nodes, elapsedNanos / 1000000);
+        }
+    }
+
+    /**
+     * Timing of a single-threaded solve against a parallel one.
+     */
+    public static class Speedup
+    {
+        private final int threads;
+        private final long sequentialNanos;
+        private final long parallelNanos;
+
+        Speedup(int threads, long sequentialNanos, long parallelNanos)
+        {
+            this.threads = threads;
+            this.sequentialNanos = sequentialNanos;
+            this.parallelNanos = parallelNanos;
+        }
+
+        public int getThreads()
+        {
+            return threads;
+        }
+
+        public long getSequentialNanos()
+        {
+            return sequentialNanos;
+        }
+
+        public long getParallelNanos()
+        {
+            return parallelNanos;
+        }
+
+        /**
+         * Gets how many times faster the parallel solve was.
+         */
+        public double getSpeedup()
+        {
+            return parallelNanos == 0 ? 0 : (double)sequentialNanos / parallelNanos;
+        }
+
+        /**
+         * Gets the speedup divided by the number of threads; 1.0 is
+         * perfectly linear scaling.
+         */
+        public double getEfficiency()
+        {
+            return getSpeedup() / threads;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("[Speedup threads=%d sequentialMillis=%d parallelMillis=%d speedup=%.2f efficiency=%.2f]",
+                    threads, sequentialNanos / 1000000, parallelNanos / 1000000, getSpeedup(), getEfficiency());
+        }
+    }
+
+    /**
+     * Solve boards of the sizes given as arguments (3 if none) and print the
+     * outcome, best first moves and parallel speedup for each.
+     */
+    public static void main(String[] args)
+    {
+        ParallelSolver solver = new ParallelSolver();
+        String[] sizes = args.length == 0 ? new String[] {"3"} : args;
+        for(String size : sizes)
+        {
+            TicTacToe game = new TicTacToe(Integer.parseInt(size));
+            System.out.println(String.format("%sx%s: %s", size, size, solver.solve(game)));
+            System.out.println(String.format("%sx%s: %s", size, size, solver.measureSpeedup(game)));
+        }
+    }
+}
@@ -1,15 +1,56 @@
 import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.Map;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
 
 public class PlayTicTacToe
 {
+    private static final int MAX_SEARCH_SIZE = 5;
+    private static final MonteCarloPlayer MONTE_CARLO = new MonteCarloPlayer();
+    private static final int MAX_FULL_DISPLAY_SIZE = 40;
+    private static final int VIEWPORT_RADIUS = 10;
+    private static final BoardRenderer RENDERER = new BoardRenderer();
+
     /**
      * Interactive text console for playing Tic Tac Toe.
+     *
+     * Optional arguments let the computer play one side:
+     * the token it plays (X or O), and how many milliseconds
+     * it may think about each move (1000 if not given).
+     *
+     * Given --batch and optionally a file name instead, checks recorded
+     * games from the file or standard input without any prompts, printing
+     * a result line for each. See {@link BatchRunner} for the format.
      */
     public static void main(String[] args)
     {
+        if(args.length > 0 && args[0].equals("--batch"))
+        {
+            runBatch(args.length > 1 ? args[1] : null);
+            return;
+        }
+
+        // Is the computer playing one of the sides?
+        Token computerToken = null;
+        long thinkMillis = 1000;
+        try
+        {
+            if(args.length > 0)
+                computerToken = Token.valueOf(args[0].toUpperCase());
+            if(args.length > 1)
+                thinkMillis = Long.parseLong(args[1]);
+        }
+        catch(IllegalArgumentException iae)
+        {
+            System.out.println("Usage: PlayTicTacToe [X|O [milliseconds per computer move]] | --batch [file]");
+            System.exit(1);
+        }
+
         // Set up the game board. Ask for size of board.
         System.out.print("What dimension would you like your Tic Tac Toe board to be? Standard is 3. ");
 
@@ -25,19 +66,33 @@ public class PlayTicTacToe
         {
             boardSizeStr = br.readLine();
             boardSize = Integer.parseInt(boardSizeStr);
-            if(boardSize > 0)
-                game = new TicTacToe(boardSize);
-            else
+            if(boardSize <= 0)
             {
                 System.out.println(String.format(sizeErrorMsgFormat, boardSizeStr));
                 System.exit(1);
             }
+
+            // On bigger boards, players may choose to win with a shorter run.
+            int winLength = boardSize;
+            if(boardSize > 3)
+            {
+                System.out.print(String.format("How many in a row wins? Press enter for %d. ", boardSize));
+                String winLengthStr = br.readLine();
+                if(winLengthStr != null && !winLengthStr.trim().isEmpty())
+                    winLength = Integer.parseInt(winLengthStr.trim());
+            }
+            game = new TicTacToe(boardSize, winLength);
         }
         catch(NumberFormatException nfe)
         {
             System.out.println(String.format(sizeErrorMsgFormat, boardSizeStr));
             System.exit(1);
         }
+        catch(IllegalArgumentException iae)
+        {
+            System.out.println(iae.getMessage());
+            System.exit(1);
+        }
         catch (IOException e)
         {
             System.out.println("IO error trying to read your desired game board size.");
@@ -56,6 +111,18 @@ public class PlayTicTacToe
 
             try
             {
+                if(token == computerToken)
+                {
+                    // Let the computer choose its square
+                    Square square = chooseComputerMove(game, thinkMillis);
+                    System.out.println(String.format("Player %s plays %d,%d", token, square.getRow(), square.getColumn()));
+                    game.placeToken(token, square.getRow(), square.getColumn());
+                    displayBoard(game);
+                    if(checkGameOver(game))
+                        gameOver = true;
+                    continue;
+                }
+
                 // Get user input for coordinates of next square to play
                 System.out.println(String.format("Player %s, choose your square. Enter row,column", token));
                 String coords = br.readLine();
@@ -76,21 +143,8 @@ public class PlayTicTacToe
                 // Print out the current state of the board
                 displayBoard(game);
 
-                // Check if the game is over, either because someone won, or there are no more spaces.
-                Token winner = game.getWinner();
-                if(winner != null)
-                {
-                    System.out.println(String.format("Congratulations, %s! You won!", winner));
+                if(checkGameOver(game))
                     gameOver = true;
-                }
-                else
-                {
-                    if(game.isBoardFull())
-                    {
-                        System.out.println("Board is full. No one wins.");
-                        gameOver = true;
-                    }
-                }
             }
             catch(NumberFormatException nfe)
             {
@@ -110,21 +164,84 @@ public class PlayTicTacToe
     }
     
     /**
-     * Print out current board state as text.
+     * Check recorded games, one per line, and print the result of each.
+     *
+     * @param fileName File to read the games from, or null for standard input.
+     */
+    private static void runBatch(String fileName)
+    {
+        try(ReadableByteChannel in = fileName == null ? Channels.newChannel(System.in)
+                : FileChannel.open(Paths.get(fileName)))
+        {
+            // Write straight to standard output, past System.out's buffering
+            FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel();
+            new BatchRunner(Runtime.getRuntime().availableProcessors()).run(in, out);
+        }
+        catch(IOException ioe)
+        {
+            System.out.println(String.format("IO error checking games. %s", ioe.getMessage()));
+            System.exit(1);
+        }
+        catch(InterruptedException ie)
+        {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Pick a move for the computer. Boards up to 5x5 are small enough for
+     * a game-tree search; bigger ones play out random games instead.
+     */
+    private static Square chooseComputerMove(TicTacToe game, long thinkMillis)
+    {
+        if(game.getBoardSize() <= MAX_SEARCH_SIZE)
+            return new GameSearch().search(game, thinkMillis).getMove();
+        return MONTE_CARLO.chooseMove(game, thinkMillis, Long.MAX_VALUE).getMove();
+    }
+    
+    /**
+     * Check if the game is over, either because someone won, or there are
+     * no more spaces, or no one can win any more. Announces the result.
+     *
+     * @return True if the game is over.
+     */
+    private static boolean checkGameOver(TicTacToe game)
+    {
+        Token winner = game.getWinner();
+        if(winner != null)
+        {
+            System.out.println(String.format("Congratulations, %s! You won!", winner));
+            return true;
+        }
+        if(game.isBoardFull())
+        {
+            System.out.println("Board is full. No one wins.");
+            return true;
+        }
+        if(game.isDrawForced())
+        {
+            System.out.println("No one can complete a line any more. It's a draw.");
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Print out current board state as text. Boards too big to read on
+     * screen only show the area around the last move.
      */
     private static void displayBoard(TicTacToe game)
     {
-        Map<Square, Token> gameBoard = game.getCurrentGameBoard();
-        int boardSize = game.getBoardSize();
-        
-        for(int row=1; row<=boardSize; row++)
+        try
         {
-            for(int column=1; column<=boardSize; column++)
-            {
-                Token token = gameBoard.get(new Square(row, column));
-                System.out.print(String.format("%s ", token==null?"~":token));
-            }
-            System.out.println();
+            if(game.getBoardSize() <= MAX_FULL_DISPLAY_SIZE)
+                RENDERER.render(game, System.out);
+            else
+                RENDERER.renderViewport(game, VIEWPORT_RADIUS, System.out);
+        }
+        catch(IOException ioe)
+        {
+            System.out.println("IO error trying to display the board.");
         }
     }
 
@@ -0,0 +1,42 @@
+import java.util.function.Supplier;
+
+/**
+ * A computer player taking part in a {@link TournamentRunner tournament}:
+ * a name, and a way of choosing moves.
+ */
+public interface Player
+{
+    /**
+     * Gets the name to show in results.
+     */
+    String getName();
+
+    /**
+     * Make a move policy for this player. Policies may keep state between
+     * moves, so each thread asks for its own.
+     */
+    MovePolicy newPolicy();
+
+    /**
+     * Gets a player that chooses moves with the given policies.
+     *
+     * @param policies Makes a policy, once per thread.
+     */
+    static Player of(String name, Supplier<MovePolicy> policies)
+    {
+        return new Player()
+        {
+            @Override
+            public String getName()
+            {
+                return name;
+            }
+
+            @Override
+            public MovePolicy newPolicy()
+            {
+                return policies.get();
+            }
+        };
+    }
+}
@@ -0,0 +1,254 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Plays large numbers of computer-vs-computer games and gathers statistics
+ * about how they turn out.
+ *
+ * Each thread plays its share of the games on a single board that it resets
+ * between games, with its own instances of the two move policies, and keeps
+ * its own tallies. The tallies are only added together once every thread
+ * has finished, so the threads share nothing while they play.
+ */
+public class SelfPlaySimulator
+{
+    private final int boardSize;
+    private final Supplier<MovePolicy> xPolicy;
+    private final Supplier<MovePolicy> oPolicy;
+
+    /**
+     * Create a simulator.
+     *
+     * @param boardSize Size of the game board (number of rows/columns)
+     * @param xPolicy Makes a move policy for X, once per thread.
+     * @param oPolicy Makes a move policy for O, once per thread.
+     */
+    public SelfPlaySimulator(int boardSize, Supplier<MovePolicy> xPolicy, Supplier<MovePolicy> oPolicy)
+    {
+        this.boardSize = boardSize;
+        this.xPolicy = xPolicy;
+        this.oPolicy = oPolicy;
+    }
+
+    /**
+     * Play the given number of games, spread evenly over the given number
+     * of threads.
+     *
+     * @param seed Seed for the random moves, so runs can be repeated.
+     * @return Combined statistics for all the games.
+     */
+    public Statistics run(long games, int threads, long seed)
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try
+        {
+            List<Future<Statistics>> futures = new ArrayList<Future<Statistics>>();
+            SplittableRandom seeds = new SplittableRandom(seed);
+            for(int i=0; i<threads; i++)
+            {
+                long share = games / threads + (i < games % threads ? 1 : 0);
+                futures.add(pool.submit(new Worker(share, seeds.split())));
+            }
+
+            Statistics total = new Statistics();
+            for(Future<Statistics> future : futures)
+                total.add(future.get());
+            total.elapsedNanos = System.nanoTime() - start;
+            return total;
+        }
+        catch(InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ERROR: Interrupted while simulating.", ie);
+        }
+        catch(ExecutionException ee)
+        {
+            throw new IllegalStateException("ERROR: Simulation failed.", ee.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Plays one thread's share of the games.
+     */
+    private class Worker implements Callable<Statistics>
+    {
+        private final long games;
+        private final SplittableRandom random;
+
+        Worker(long games, SplittableRandom random)
+        {
+            this.games = games;
+            this.random = random;
+        }
+
+        @Override
+        public Statistics call()
+        {
+            Statistics statistics = new Statistics();
+            TicTacToe game = new TicTacToe(boardSize);
+            MovePolicy x = xPolicy.get();
+            MovePolicy o = oPolicy.get();
+            int cellCount = boardSize*boardSize;
+            for(long i=0; i<games; i++)
+            {
+                game.reset();
+                while(game.winner == null && game.getMoveCount() < cellCount && !game.isDrawForced())
+                {
+                    MovePolicy policy = game.getMoveCount() % 2 == 0 ? x : o;
+                    game.play(policy.chooseMove(game, random));
+                }
+                statistics.record(game.getWinner(), game.getMoveCount());
+            }
+            return statistics;
+        }
+    }
+
+    /**
+     * Tallies of how a set of games turned out.
+     */
+    public static class Statistics
+    {
+        private long games;
+        private long xWins;
+        private long oWins;
+        private long totalMoves;
+        private long elapsedNanos;
+
+        void record(Token winner, int moves)
+        {
+            games++;
+            totalMoves += moves;
+            if(winner == Token.X)
+                xWins++;
+            else if(winner == Token.O)
+                oWins++;
+        }
+
+        void add(Statistics other)
+        {
+            games += other.games;
+            xWins += other.xWins;
+            oWins += other.oWins;
+            totalMoves += other.totalMoves;
+        }
+
+        public long getGames()
+        {
+            return games;
+        }
+
+        public long getXWins()
+        {
+            return xWins;
+        }
+
+        public long getOWins()
+        {
+            return oWins;
+        }
+
+        public long getDraws()
+        {
+            return games - xWins - oWins;
+        }
+
+        public double getXWinRate()
+        {
+            return games == 0 ? 0 : (double)xWins / games;
+        }
+
+        public double getOWinRate()
+        {
+            return games == 0 ? 0 : (double)oWins / games;
+        }
+
+        public double getDrawRate()
+        {
+            return games == 0 ? 0 : (double)getDraws() / games;
+        }
+
+        /**
+         * Gets the average number of moves per game. Games that can only be
+         * drawn are stopped as soon as that is known.
+         */
+        public double getAverageMoves()
+        {
+            return games == 0 ? 0 : (double)totalMoves / games;
+        }
+
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        public double getGamesPerSecond()
+        {
+            return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("games=%d xWins=%.4f oWins=%.4f draws=%.4f averageMoves=%.2f gamesPerSecond=%.0f",
+                    games, getXWinRate(), getOWinRate(), getDrawRate(), getAverageMoves(), getGamesPerSecond());
+        }
+    }
+
+    /**
+     * Run a simulation from the command line.
+     * Arguments: board size, number of games, X policy and O policy
+     * (random, greedy, search:depth or book:file), and optionally the number of threads.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 4)
+        {
+            System.out.println("Usage: SelfPlaySimulator size games xPolicy oPolicy [threads]");
+            System.out.println("Policies: random, greedy, search:depth, book:file");
+            System.exit(1);
+        }
+
+        int size = Integer.parseInt(args[0]);
+        long games = Long.parseLong(args[1]);
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        SelfPlaySimulator simulator = new SelfPlaySimulator(size, policy(args[2]), policy(args[3]));
+        System.out.println(simulator.run(games, threads, System.nanoTime()));
+    }
+
+    /**
+     * Gets the policy named on the command line: random, greedy,
+     * search:depth or book:file.
+     */
+    static Supplier<MovePolicy> policy(String name) throws IOException
+    {
+        if(name.equals("random"))
+            return MovePolicy::random;
+        if(name.equals("greedy"))
+            return MovePolicy::greedy;
+        if(name.startsWith("search:"))
+        {
+            int depth = Integer.parseInt(name.substring("search:".length()));
+            return () -> MovePolicy.search(depth);
+        }
+        if(name.startsWith("book:"))
+        {
+            MovePolicy book = MovePolicy.book(OpeningBook.open(Paths.get(name.substring("book:".length()))));
+            return () -> book;
+        }
+        throw new IllegalArgumentException(String.format("ERROR: Unknown move policy %s.", name));
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The games currently hosted by a server, by session id.
+ */
+public class SessionRegistry
+{
+    private final ConcurrentHashMap<Long, GameSession> sessions = new ConcurrentHashMap<Long, GameSession>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    /**
+     * Start a new game.
+     *
+     * @param size Size of the game board (number of rows/columns)
+     */
+    public GameSession create(int size)
+    {
+        return create(size, size);
+    }
+
+    /**
+     * Start a new game won by the given number of tokens in a row.
+     *
+     * @param size Size of the game board (number of rows/columns)
+     * @param winLength Tokens in a row needed to win, from 1 to the board size.
+     * @throws IllegalArgumentException if the win length is out of range.
+     */
+    public GameSession create(int size, int winLength)
+    {
+        TicTacToe game = new TicTacToe(size, winLength);
+        long id = nextId.getAndIncrement();
+        GameSession session = new GameSession(id, game);
+        sessions.put(id, session);
+        return session;
+    }
+
+    /**
+     * Host a game saved before, under the id it had then. Later games get
+     * ids after it.
+     */
+    GameSession restore(long id, TicTacToe game)
+    {
+        GameSession session = new GameSession(id, game);
+        sessions.put(id, session);
+        nextId.accumulateAndGet(id + 1, Math::max);
+        return session;
+    }
+
+    /**
+     * Gets a game.
+     *
+     * @return The session, or null if there is no game with that id.
+     */
+    public GameSession get(long id)
+    {
+        return sessions.get(id);
+    }
+
+    /**
+     * Stop hosting a game.
+     *
+     * @return True if there was a game with that id.
+     */
+    public boolean remove(long id)
+    {
+        return sessions.remove(id) != null;
+    }
+
+    /**
+     * Gets the number of games being hosted.
+     */
+    public int size()
+    {
+        return sessions.size();
+    }
+
+    /**
+     * Gets a live, read-only view of the games being hosted.
+     */
+    public Collection<GameSession> getSessions()
+    {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+}
@@ -3,8 +3,12 @@
  */
 public class Square
 {
-    int row;
-    int column;
+    // Squares on boards up to this size are shared rather than created anew.
+    private static final int INTERNED_SIZE = 256;
+    private static final Square[] INTERNED = new Square[INTERNED_SIZE*INTERNED_SIZE];
+
+    final int row;
+    final int column;
     
     public Square(int row, int column)
     {
@@ -12,6 +16,28 @@ public class Square
         this.column = column;
     }
     
+    /**
+     * Gets the square at the specified row and column. Squares on boards of
+     * up to 256 rows/columns are created once and then reused, so repeated
+     * lookups do not allocate.
+     */
+    public static Square of(int row, int column)
+    {
+        if(row < 1 || column < 1 || row > INTERNED_SIZE || column > INTERNED_SIZE)
+            return new Square(row, column);
+
+        // Squares are immutable, so two threads racing to fill the same
+        // slot just store equal squares and either one is fine to keep.
+        int index = (row-1)*INTERNED_SIZE + column-1;
+        Square square = INTERNED[index];
+        if(square == null)
+        {
+            square = new Square(row, column);
+            INTERNED[index] = square;
+        }
+        return square;
+    }
+    
     public int getRow()
     {
         return row;
@@ -25,8 +51,9 @@ public class Square
     @Override
     public int hashCode()
     {
-        String squareLoc = this.row + this.column + "";
-        return Integer.parseInt(squareLoc);
+        // Distinct for every square on boards narrower than the multiplier,
+        // and spread well enough that hash tables don't need to rehash it.
+        return 92821*row + column;
     }
     
     @Override
@@ -0,0 +1,202 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The 8 rotations and reflections of a square board, used to treat
+ * positions that are mirror images or rotations of each other as one.
+ *
+ * Each transform is a precomputed permutation of cell indexes, built once
+ * per board size. A board's canonical form is whichever of its 8 transformed
+ * versions comes first comparing cell by cell, so every equivalent board has
+ * the same canonical form.
+ */
+public final class Symmetry
+{
+    /** Number of rotations and reflections of a square. */
+    public static final int TRANSFORMS = 8;
+
+    /** The transform that leaves the board as it is. */
+    public static final int IDENTITY = 0;
+
+    private static final ConcurrentHashMap<Integer, Symmetry> BY_SIZE = new ConcurrentHashMap<Integer, Symmetry>();
+
+    private final int size;
+    private final int[][] forward; // forward[t][cell] = where t moves cell to
+    private final int[][] inverse; // inverse[t][cell] = which cell t moves to cell
+
+    private Symmetry(int size)
+    {
+        this.size = size;
+        int cellCount = size*size;
+        this.forward = new int[TRANSFORMS][cellCount];
+        this.inverse = new int[TRANSFORMS][cellCount];
+        for(int t=0; t<TRANSFORMS; t++)
+        {
+            for(int cell=0; cell<cellCount; cell++)
+            {
+                int image = transform(t, cell / size, cell % size);
+                forward[t][cell] = image;
+                inverse[t][image] = cell;
+            }
+        }
+    }
+
+    /**
+     * Gets the transforms for boards of the given size.
+     */
+    public static Symmetry forSize(int size)
+    {
+        return BY_SIZE.computeIfAbsent(size, Symmetry::new);
+    }
+
+    /**
+     * Gets the cell that a zero-based (row, column) moves to under a transform:
+     * 0 identity, 1-3 rotations by 90, 180 and 270 degrees clockwise,
+     * 4 left-right mirror, 5 top-bottom mirror, 6 and 7 the two diagonal mirrors.
+     */
+    private int transform(int t, int row, int column)
+    {
+        int last = size - 1;
+        switch(t)
+        {
+            case 0: return row*size + column;
+            case 1: return column*size + (last - row);
+            case 2: return (last - row)*size + (last - column);
+            case 3: return (last - column)*size + row;
+            case 4: return row*size + (last - column);
+            case 5: return (last - row)*size + column;
+            case 6: return column*size + row;
+            default: return (last - column)*size + (last - row);
+        }
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the cell a transform moves the given cell to. Use this to carry
+     * a move on the original board over to the transformed board.
+     */
+    public int mapCell(int transform, int cell)
+    {
+        return forward[transform][cell];
+    }
+
+    /**
+     * Gets the cell a transform moved to the given cell. Use this to carry a
+     * move on the canonical board back to the original board.
+     */
+    public int unmapCell(int transform, int cell)
+    {
+        return inverse[transform][cell];
+    }
+
+    /**
+     * Find the transform that turns a board into its canonical form,
+     * without building any of the transformed boards.
+     *
+     * @param cells One value per cell, as from {@link Board#getCells()}.
+     * @return The transform, to pass to {@link #apply(int, byte[])},
+     *         {@link #mapCell(int, int)} and {@link #unmapCell(int, int)}.
+     */
+    public int canonicalTransform(byte[] cells)
+    {
+        int best = IDENTITY;
+        for(int t=1; t<TRANSFORMS; t++)
+        {
+            if(compare(cells, t, best) < 0)
+                best = t;
+        }
+        return best;
+    }
+
+    /**
+     * Find the transform that turns a board into its canonical form.
+     */
+    public int canonicalTransform(Board board)
+    {
+        return canonicalTransform(board.getCells());
+    }
+
+    /**
+     * Find the transform that turns a board, given as a map like
+     * {@link TicTacToe#getCurrentGameBoard()}, into its canonical form.
+     */
+    public int canonicalTransform(Map<Square, Token> gameBoard)
+    {
+        return canonicalTransform(toCells(gameBoard));
+    }
+
+    /**
+     * Gets the canonical form of a board.
+     */
+    public byte[] canonicalize(byte[] cells)
+    {
+        return apply(canonicalTransform(cells), cells);
+    }
+
+    /**
+     * Build the board that results from applying a transform.
+     */
+    public byte[] apply(int transform, byte[] cells)
+    {
+        int[] from = inverse[transform];
+        byte[] result = new byte[cells.length];
+        for(int cell=0; cell<cells.length; cell++)
+            result[cell] = cells[from[cell]];
+        return result;
+    }
+
+    /**
+     * Determine whether a transform leaves the given board exactly as it is.
+     */
+    public boolean isSymmetric(byte[] cells, int transform)
+    {
+        return compare(cells, transform, IDENTITY) == 0;
+    }
+
+    /**
+     * Gets the smallest cell that some transform leaving the board unchanged
+     * moves the given cell to. Two moves with the same representative lead to
+     * equivalent positions, so only one of them needs looking at.
+     */
+    public int representative(byte[] cells, int cell)
+    {
+        int smallest = cell;
+        for(int t=1; t<TRANSFORMS; t++)
+        {
+            if(forward[t][cell] < smallest && isSymmetric(cells, t))
+                smallest = forward[t][cell];
+        }
+        return smallest;
+    }
+
+    /**
+     * Compare the boards two transforms make, cell by cell.
+     */
+    private int compare(byte[] cells, int a, int b)
+    {
+        int[] fromA = inverse[a];
+        int[] fromB = inverse[b];
+        for(int cell=0; cell<cells.length; cell++)
+        {
+            int diff = cells[fromA[cell]] - cells[fromB[cell]];
+            if(diff != 0)
+                return diff;
+        }
+        return 0;
+    }
+
+    private byte[] toCells(Map<Square, Token> gameBoard)
+    {
+        byte[] cells = new byte[size*size];
+        for(Map.Entry<Square, Token> entry : gameBoard.entrySet())
+        {
+            Square square = entry.getKey();
+            cells[(square.getRow()-1)*size + square.getColumn()-1] = entry.getValue() == Token.X ? Board.X : Board.O;
+        }
+        return cells;
+    }
+}
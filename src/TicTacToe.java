@@ -1,20 +1,37 @@
-import java.util.LinkedHashMap;
 import java.util.Map;
-
-import com.google.common.collect.Iterables;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
 
 /**
  * Methods for playing Tic Tac Toe according to proper rules
  * on a game board of specified size.
  *
+ * By default a player wins by filling a whole row, column or main
+ * diagonal. Games can instead be won by a shorter run of tokens in any
+ * direction, such as five in a row on a 15x15 board.
+ *
  * @author Diana.Kantor
  */
 public class TicTacToe
 {
     int boardSize; // number of rows / number of columns
-    LinkedHashMap<Square, Token> gameBoard;
+    int winLength; // tokens in a row needed to win
+    Board board;
+    LineCounts lines;
+    Map<Square, Token> boardView; // built on first request
+    int[] moves; // cell played at each turn, in order
+    int moveCount; // number of moves currently on the board
+    int historyLength; // number of moves recorded, including undone ones
+    int[] freeCells; // empty cells in no particular order, the first freeCount of them
+    int[] freePositions; // where each empty cell is in freeCells
+    int freeCount;
     boolean isGameOver = false;
     Token winner;
+    LatencyHistogram[] timings; // null unless metrics are on
+    boolean startCounted; // whether metrics have counted this game as started
+    boolean finishCounted; // and as finished
+    volatile BoardSnapshot snapshot; // as of the last public change
+    private final BoardSnapshot emptySnapshot;
     
     /**
      * Default constructor. Create a new standard game (3 rows/columns).
@@ -31,16 +48,123 @@ public class TicTacToe
      */
     public TicTacToe(int size)
     {
-        this.boardSize = size;
-        this.gameBoard = new LinkedHashMap<Square, Token>(size*size);
+        this(new BitBoard(size));
+    }
+    
+    /**
+     * Create a new game won by a run of tokens shorter than the board.
+     *
+     * @param size Size of the game board (number of rows/columns)
+     * @param winLength Number of tokens in a row, column or diagonal
+     *        needed to win, from 1 to the board size.
+     * @throws IllegalArgumentException if the win length is out of range.
+     */
+    public TicTacToe(int size, int winLength)
+    {
+        this(new BitBoard(size), winLength);
+    }
+    
+    /**
+     * Create a new game on the given board storage.
+     *
+     * @param board Empty board to play on. Its size sets the size of the game.
+     */
+    public TicTacToe(Board board)
+    {
+        this(board, board.getSize());
+    }
+    
+    /**
+     * Create a new game on the given board storage, won by the given
+     * number of tokens in a row.
+     *
+     * @param board Empty board to play on. Its size sets the size of the game.
+     * @param winLength Number of tokens in a row, column or diagonal
+     *        needed to win, from 1 to the board size.
+     * @throws IllegalArgumentException if the win length is out of range.
+     */
+    public TicTacToe(Board board, int winLength)
+    {
+        if(winLength < 1 || winLength > board.getSize())
+            throw new IllegalArgumentException(
+                    String.format("ERROR: Win length must be between 1 and %d", board.getSize()));
+        this.boardSize = board.getSize();
+        this.winLength = winLength;
+        this.board = board;
+        this.lines = new LineCounts(board.getSize(), winLength);
+        this.moves = new int[board.getSize()*board.getSize()];
+        this.freeCells = new int[moves.length];
+        this.freePositions = new int[moves.length];
+        for(int cell=0; cell<moves.length; cell++)
+        {
+            freeCells[cell] = cell;
+            freePositions[cell] = cell;
+        }
+        this.freeCount = moves.length;
+        this.emptySnapshot = BoardSnapshot.empty(board.getSize());
+        this.snapshot = emptySnapshot;
+        if(GameMetrics.ENABLED)
+            this.timings = GameMetrics.INSTANCE.timings(board.getSize());
     }
     
     /**
-     * Gets the current state of the game board.
+     * Gets the current state of the game board as a read-only view.
+     * The view stays in step with the game as more tokens are played.
      */
     public Map<Square, Token> getCurrentGameBoard()
     {
-        return this.gameBoard;
+        if(this.boardView == null)
+            this.boardView = new BoardMapView(this.board);
+        return this.boardView;
+    }
+    
+    /**
+     * Gets an unchanging picture of the game as of its last move. Unlike the
+     * rest of the game, this is safe to call from any thread at any time,
+     * and the snapshot can be read for as long as needed while the game
+     * goes on.
+     */
+    public BoardSnapshot getSnapshot()
+    {
+        return this.snapshot;
+    }
+    
+    /**
+     * Gets the storage behind the game board.
+     */
+    public Board getBoard()
+    {
+        return this.board;
+    }
+    
+    /**
+     * Creates an independent copy of this game, including the board
+     * and whose turn it is.
+     */
+    public TicTacToe copy()
+    {
+        TicTacToe copy = new TicTacToe(this.board.copy(), this.winLength);
+        copy.lines = this.lines.copy();
+        copy.moves = this.moves.clone();
+        copy.moveCount = this.moveCount;
+        copy.historyLength = this.historyLength;
+        copy.freeCells = this.freeCells.clone();
+        copy.freePositions = this.freePositions.clone();
+        copy.freeCount = this.freeCount;
+        copy.isGameOver = this.isGameOver;
+        copy.winner = this.winner;
+        copy.snapshot = this.snapshot;
+        copy.startCounted = this.startCounted;
+        copy.finishCounted = this.finishCounted;
+        return copy;
+    }
+    
+    /**
+     * Gets the number of tokens in a row needed to win.
+     */
+    public int getWinLength()
+    {
+        return this.winLength;
     }
     
     /**
@@ -55,20 +179,36 @@ public class TicTacToe
      * Determine which token has the next turn.
      */
     public Token getNextTurn()
+    {
+        if(!GameMetrics.ENABLED)
+            return nextTurn();
+
+        long start = System.nanoTime();
+        try
+        {
+            return nextTurn();
+        }
+        finally
+        {
+            timings[GameMetrics.NEXT_TURN].record(System.nanoTime() - start);
+        }
+    }
+
+    private Token nextTurn()
     {
         if(isGameOver)
             throw new IllegalStateException(String.format("ERROR: This game is over already."));
 
-        Square lastPlayedSquare = getLastPlayedSquare();
-        Token lastPlayedToken = gameBoard.get(lastPlayedSquare);
-        
-        // First turn always goes to X
-        if(lastPlayedToken == null)
-            return Token.X;
-        else if(lastPlayedToken == Token.O)
-            return Token.X;
-        else
-            return Token.O;
+        // First turn always goes to X, then the players alternate
+        return tokenForMove(moveCount);
+    }
+    
+    /**
+     * Gets the token that plays the given move, counting from 0.
+     */
+    private static Token tokenForMove(int move)
+    {
+        return move % 2 == 0 ? Token.X : Token.O;
     }
     
     /**
@@ -81,31 +221,296 @@ public class TicTacToe
     public void placeToken(Token token, int row, int column)
             throws IllegalArgumentException
     {
+        int status = tryPlace(token, row, column);
+        if(MoveStatus.isPlayed(status))
+            return;
+        String message = MoveStatus.message(status, token, this.boardSize);
+        if(status == MoveStatus.GAME_OVER)
+            throw new IllegalStateException(message);
+        throw new IllegalArgumentException(message);
+    }
+
+    /**
+     * Play the token whose turn it is in the specified square, if allowed.
+     *
+     * @param row Row number of the space to place the token.
+     * @param column Column number of the space to place the token.
+     * @return A {@link MoveStatus}: whether the move was played, and if so
+     *         how the game stands, or if not why not.
+     */
+    public int tryPlace(int row, int column)
+    {
+        return tryPlace(tokenForMove(moveCount), row, column);
+    }
+
+    /**
+     * Play a token in the specified square, if allowed. Unlike
+     * {@link #placeToken}, nothing is thrown or allocated when the move
+     * is not allowed.
+     *
+     * @param row Row number of the space to place the token.
+     * @param column Column number of the space to place the token.
+     * @return A {@link MoveStatus}: whether the move was played, and if so
+     *         how the game stands, or if not why not.
+     */
+    public int tryPlace(Token token, int row, int column)
+    {
+        if(!GameMetrics.ENABLED)
+            return place(token, row, column);
+
+        long start = System.nanoTime();
+        int status = place(token, row, column);
+        timings[GameMetrics.PLACE_TOKEN].record(System.nanoTime() - start);
+        GameMetrics.INSTANCE.moveMade(status);
+        if(MoveStatus.isPlayed(status))
+            countGame();
+        return status;
+    }
+
+    /**
+     * Count the game as started, and as finished once it is over or no one
+     * can win, each only once however the moves come and go.
+     */
+    private void countGame()
+    {
+        if(!startCounted)
+        {
+            startCounted = true;
+            GameMetrics.INSTANCE.gameStarted();
+        }
+        if(!finishCounted && (isGameOver || isDrawForced()))
+        {
+            finishCounted = true;
+            GameMetrics.INSTANCE.gameFinished(winner == null);
+        }
+    }
+
+    private int place(Token token, int row, int column)
+    {
+        // If the game is already over, no more tokens can be played.
+        if(isGameOver)
+            return MoveStatus.GAME_OVER;
         // Make sure the right token is playing this turn
-        if (token != getNextTurn())
-            throw new IllegalArgumentException(String.format("ERROR: %s, it is not your turn.", token));
+        if(token != tokenForMove(moveCount))
+            return MoveStatus.WRONG_TURN;
         // Make sure it's a valid square
-        if (row > this.boardSize || column > this.boardSize)
-            throw new IllegalArgumentException(
-                    String.format("ERROR: Your chose an invalid square. Row and column must be between 1 and %d", this.boardSize));
-        // If the game is already over, no more tokens can be played.
-        if (isGameOver)
-            throw new IllegalStateException(
-                    String.format("ERROR: This game is over already."));
+        if(row < 1 || column < 1 || row > this.boardSize || column > this.boardSize)
+            return MoveStatus.OUT_OF_RANGE;
 
         // Place the token iff the square is unoccupied
-        Square currentSquare = new Square(row, column);
-        Token currentToken = gameBoard.get(currentSquare);
-        if (currentToken == null)
-            gameBoard.put(currentSquare, token);
-        else
-            throw new IllegalArgumentException("ERROR: Square already occupied.");
-
-        if (didLastPlayWin())
+        int cell = (row-1)*this.boardSize + column-1;
+        if(board.get(cell) != null)
+            return MoveStatus.OCCUPIED;
+
+        // A new move replaces any moves that were undone
+        historyLength = moveCount;
+        play(cell);
+        snapshot = snapshot.change(cell, this);
+        return status();
+    }
+
+    /**
+     * Play a series of moves in one go, each by whoever's turn it is, such
+     * as to replay a whole game. Stops at the first move that isn't allowed,
+     * leaving the moves before it played.
+     *
+     * @param cells Cell index of each move: (row-1)*size + (column-1).
+     * @return The {@link MoveStatus} of the last move played, or of the
+     *         move that wasn't allowed. OK if there were no moves.
+     */
+    public int applyMoves(int[] cells)
+    {
+        return applyMoves(cells, cells.length);
+    }
+
+    /**
+     * Play the first few moves in an array in one go, the same as
+     * {@link #applyMoves(int[])}.
+     *
+     * @param count Number of moves to play from the start of the array.
+     */
+    public int applyMoves(int[] cells, int count)
+    {
+        int startCount = moveCount;
+        int status = MoveStatus.OK;
+        for(int i=0; i<count; i++)
+        {
+            int cell = cells[i];
+            if(isGameOver)
+                status = MoveStatus.GAME_OVER;
+            else if(cell < 0 || cell >= moves.length)
+                status = MoveStatus.OUT_OF_RANGE;
+            else if(board.get(cell) != null)
+                status = MoveStatus.OCCUPIED;
+            else
+            {
+                historyLength = moveCount;
+                play(cell);
+                status = status();
+                continue;
+            }
+            break;
+        }
+
+        if(moveCount != startCount)
+            publishSnapshot();
+        if(GameMetrics.ENABLED)
+        {
+            GameMetrics.INSTANCE.movesApplied(moveCount - startCount, status);
+            if(moveCount != startCount)
+                countGame();
+        }
+        return status;
+    }
+
+    /**
+     * Gets the status of the game after a move was played.
+     */
+    private int status()
+    {
+        if(winner != null)
+            return MoveStatus.WIN;
+        if(moveCount == moves.length)
+            return MoveStatus.DRAW;
+        return MoveStatus.OK;
+    }
+
+    /**
+     * Play the next token in the specified cell, which must be empty,
+     * and record the move.
+     */
+    void play(int cell)
+    {
+        Token token = tokenForMove(moveCount);
+        board.set(cell, token);
+        moves[moveCount++] = cell;
+        if(moveCount > historyLength)
+            historyLength = moveCount;
+
+        // Fill the cell's place in the free list with the last free cell
+        int last = freeCells[--freeCount];
+        int position = freePositions[cell];
+        freeCells[position] = last;
+        freePositions[last] = position;
+        freeCells[freeCount] = cell;
+        freePositions[cell] = freeCount;
+
+        // The line counts tell us straight away whether this play completed
+        // a winning run
+        if(lines.add(cell / boardSize, cell % boardSize, token))
         {
             this.winner = token;
             this.isGameOver = true;
         }
+        else if(freeCount == 0)
+            this.isGameOver = true;
+    }
+
+    /**
+     * Determine whether playing the given empty cell would win for a token.
+     */
+    boolean wouldWin(int cell, Token token)
+    {
+        return lines.wouldWin(cell / boardSize, cell % boardSize, token);
+    }
+
+    /**
+     * Take back the last move. The move can be played again with
+     * {@link #redo()} until a different move is made.
+     *
+     * @return True if a move was taken back, false if the board was empty.
+     */
+    public boolean undo()
+    {
+        if(moveCount == 0)
+            return false;
+
+        snapshot = snapshot.change(unplay(), this);
+        return true;
+    }
+
+    /**
+     * Take back the last move, which there must be, without publishing a
+     * new snapshot. For trying moves out and taking them back again.
+     *
+     * @return The cell that was emptied.
+     */
+    int unplay()
+    {
+        int cell = moves[--moveCount];
+        lines.remove(cell / boardSize, cell % boardSize, board.get(cell));
+        board.clear(cell);
+
+        // The cell was the last one taken from the free list, so it's still
+        // just past the end of it
+        freeCount++;
+
+        // The game can only have been won or filled on the move just taken
+        // back, so the position before it was still in play.
+        this.winner = null;
+        this.isGameOver = false;
+        return cell;
+    }
+
+    /**
+     * Play again the last move taken back with {@link #undo()}.
+     *
+     * @return True if a move was played, false if there was nothing to redo.
+     */
+    public boolean redo()
+    {
+        if(moveCount == historyLength)
+            return false;
+
+        int cell = moves[moveCount];
+        play(cell);
+        snapshot = snapshot.change(cell, this);
+        return true;
+    }
+
+    /**
+     * Gets the last square that was played.
+     *
+     * @return The square, or null if no one has played yet.
+     */
+    public Square getLastMove()
+    {
+        if(moveCount == 0)
+            return null;
+
+        int cell = moves[moveCount-1];
+        return Square.of(cell / boardSize + 1, cell % boardSize + 1);
+    }
+
+    /**
+     * Gets the number of moves played so far.
+     */
+    public int getMoveCount()
+    {
+        return moveCount;
+    }
+
+    /**
+     * Clear the board and the move history to start a new game,
+     * reusing the storage of this one.
+     */
+    public void reset()
+    {
+        while(moveCount > 0)
+            unplay();
+        historyLength = 0;
+        snapshot = emptySnapshot;
+        startCounted = false;
+        finishCounted = false;
+    }
+
+    /**
+     * Publish a new snapshot of the game after moves made with
+     * {@link #play(int)}, which doesn't publish them itself.
+     */
+    void publishSnapshot()
+    {
+        snapshot = BoardSnapshot.of(this);
     }
 
     /**
@@ -126,173 +531,132 @@ public class TicTacToe
      */
     public boolean isBoardFull()
     {
-        if(gameBoard.size() == boardSize*boardSize)
-        {
-            isGameOver = true;
-            return true;
-        }
-
-        return false;
+        return freeCount == 0;
     }
 
     /**
-     * Gets the last square that was played.
+     * Gets the number of empty squares.
      */
-    private Square getLastPlayedSquare()
+    public int getEmptyCount()
     {
-        if(gameBoard.isEmpty())
-            return null;
+        return freeCount;
+    }
 
-        Square lastPlayedSquare = Iterables.getLast(gameBoard.keySet());
+    /**
+     * Gets an empty cell, each with equal chance.
+     *
+     * @return Cell index of the square: (row-1)*size + (column-1), or -1
+     *         if the board is full.
+     */
+    public int randomLegalMove(SplittableRandom random)
+    {
+        return freeCount == 0 ? -1 : freeCells[random.nextInt(freeCount)];
+    }
 
-        return lastPlayedSquare;
+    /**
+     * Pass the cell index of every empty square to an action, in no
+     * particular order. The action must not change the game.
+     */
+    public void forEachLegalMove(IntConsumer action)
+    {
+        for(int i=0; i<freeCount; i++)
+            action.accept(freeCells[i]);
     }
 
-	/**
-     * Determine if the latest play resulted in a win.
+    /**
+     * Gets a square that would win the game at once for a token.
+     *
+     * The game keeps track of its threats as moves are made, so this
+     * takes constant time.
      *
-     * @return True if the latest play resulted in a win.
-     * Otherwise, false.
+     * @return Cell index of the square: (row-1)*size + (column-1), or -1
+     *         if no square wins.
      */
-    private boolean didLastPlayWin()
+    public int findWinningMove(Token token)
     {
-        // If one player hasn't gone at least enough times
-        // to win, don't bother checking for a winner
-        if(gameBoard.size() < boardSize*2-1)
-            return false;
-        
-        // Check all the different possible ways to win
-        Square lastPlayedSquare = getLastPlayedSquare();
-        Token lastPlayedToken = gameBoard.get(lastPlayedSquare);
-        
-        // Check across in the current row
-        if(didWinAcross(lastPlayedToken, lastPlayedSquare))
-            return true;
-        
-        // Check down in the current column
-        if(didWinDown(lastPlayedToken, lastPlayedSquare))
-            return true;
-        
-        // Check L->R diagonal
-        if(didWinDiagonalLR(lastPlayedToken, lastPlayedSquare))
-            return true;
-        
-        // Check R->L diagonal
-        if(didWinDiagonalRL(lastPlayedToken, lastPlayedSquare))
-            return true;
-                
-        // None of our tests resulted in a winning run of
-        // the current token so no one has won yet.
-        return false;
+        return lines.threatCount(token) == 0 ? -1 : lines.threatCell(token, 0);
     }
-    
+
     /**
-     * Determine if the latest play resulted in a win
-     * across a row.
+     * Gets the square a token must play to stop the other token winning on
+     * its next move.
      *
-     * @param currentToken
-     * @param square
-     * @return True if the latest play resulted in a win across a row.
-     * Otherwise, false.
+     * @return Cell index of the square: (row-1)*size + (column-1), or -1
+     *         if the other token can't win next move. If it can win in
+     *         more than one way, any one of them.
+     */
+    public int findForcedBlock(Token token)
+    {
+        return findWinningMove(token == Token.X ? Token.O : Token.X);
+    }
+
+    /**
+     * Count the squares that would win the game at once for a token. If
+     * there are two or more, the other token can't block them all.
      */
-    private boolean didWinAcross(Token token, Square square)
+    public int countWinningMoves(Token token)
     {
-        boolean noTokensMissing = true;
-        int row = square.getRow();
-        for(int column=1; column<=boardSize; column++)
+        int count = 0;
+        int threats = lines.threatCount(token);
+        if(threats > freeCount)
         {
-            Token currentToken = gameBoard.get(new Square(row, column));
-            if(token != currentToken)
+            // Many windows share each square, as when a single token wins
+            for(int i=0; i<freeCount; i++)
             {
-                noTokensMissing = false;
-                break;
+                if(wouldWin(freeCells[i], token))
+                    count++;
             }
+            return count;
         }
-        return noTokensMissing;
+        for(int i=0; i<threats; i++)
+        {
+            // Windows crossing at an empty square share it
+            int cell = lines.threatCell(token, i);
+            boolean counted = false;
+            for(int j=0; j<i && !counted; j++)
+                counted = lines.threatCell(token, j) == cell;
+            if(!counted)
+                count++;
+        }
+        return count;
     }
-    
+
     /**
-     * Determine if the latest play resulted in a win
-     * down a column.
+     * Gets a score for the position without looking ahead. Each run of
+     * squares along a row, column or diagonal as long as a winning run, that
+     * only one token is in, counts the square of the number of tokens in it,
+     * for X or against. It is kept up to date as moves are
+     * made and taken back, so it takes constant time.
      *
-     * @param currentToken
-     * @param square
-     * @return True if the latest play resulted in a win down a column.
-     * Otherwise, false.
+     * @return The score, positive if the position favours X and negative
+     *         if it favours O.
      */
-    private boolean didWinDown(Token token, Square square)
+    public int getScore()
     {
-        boolean noTokensMissing = true;
-        int column = square.getColumn();
-        for(int row=1; row<=boardSize; row++)
-        {
-            Token currentToken = gameBoard.get(new Square(row, column));
-            if(token != currentToken)
-            {
-                noTokensMissing = false;
-                break;
-            }
-        }
-        return noTokensMissing;
+        return lines.score;
     }
-    
+
     /**
-     * Determine if the latest play resulted in a win
-     * in a diagonal left-to-right direction.
+     * Determine whether the game can only end in a draw, because every run
+     * of squares that could win already holds both tokens. This is often
+     * known well before the board is full.
      *
-     * @param currentToken
-     * @param square
-     * @return True if the latest play resulted in a diagonal
-     * left-to-right win. Otherwise, false.
+     * @return True if no one can win any more, otherwise false.
      */
-    private boolean didWinDiagonalLR(Token token, Square square)
+    public boolean isDrawForced()
     {
-        boolean noTokensMissing = true;
-        // If the row and column indexes are equal
-        // then we know it's in a L->R diagonal space
-        if(square.getRow() == square.getColumn())
-        {
-            for(int i=1; i<=this.boardSize; i++)
-            {
-                Token currentToken = gameBoard.get(new Square(i,i));
-                if(token != currentToken)
-                {
-                    noTokensMissing = false;
-                    break;
-                }
-            }
-            return noTokensMissing;
-        }
-        return false;
+        return winner == null && lines.isDrawForced();
     }
-    
+
     /**
-     * Determine if the latest play resulted in a win
-     * in a diagonal right-to-left direction.
+     * Gets the token on the specified square.
      *
-     * @param currentToken
-     * @param square
-     * @return True if the latest play resulted in a diagonal
-     * right-to-left win. Otherwise, false.
+     * @param row Row number of the square, from 1 to the board size.
+     * @param column Column number of the square, from 1 to the board size.
+     * @return The token, or null if the square is empty.
      */
-    private boolean didWinDiagonalRL(Token token, Square square)
+    public Token getToken(int row, int column)
     {
-        boolean noTokensMissing = true;
-        // If the row index + column index equals the board
-        // size + 1, then we know it's a R->L diagonal space.
-        if(square.getRow()+square.getColumn() == boardSize+1)
-        {
-            for(int i=1; i<=this.boardSize; i++)
-            {
-                Token currentToken = gameBoard.get(new Square(i,boardSize+1-i));
-                if(token != currentToken)
-                {
-                    noTokensMissing = false;
-                    break;
-                }
-            }
-            return noTokensMissing;
-        }
-        return false;
+        return board.get((row-1)*boardSize + column-1);
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,14 @@
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
+import java.util.Map;
+import java.util.SplittableRandom;
+
 import org.junit.Test;
 
 public class TicTacToeTest
@@ -157,6 +162,590 @@ public class TicTacToeTest
     	// After failure, expect same token to have turn
     	assertEquals(Token.O, game.getNextTurn());
     }
-}
-
+    
+    @Test
+    public void testCurrentGameBoard()
+    {
+        TicTacToe game = new TicTacToe(4);
+        Map<Square, Token> gameBoard = game.getCurrentGameBoard();
+        assertTrue(gameBoard.isEmpty());
+        game.placeToken(Token.X, 2, 3);
+        game.placeToken(Token.O, 4, 4);
+        assertEquals(2, gameBoard.size());
+        assertEquals(Token.X, gameBoard.get(new Square(2, 3)));
+        assertEquals(Token.O, gameBoard.get(new Square(4, 4)));
+        assertNull(gameBoard.get(new Square(1, 1)));
+        assertNull(gameBoard.get(new Square(5, 5)));
+        try
+        {
+            gameBoard.put(new Square(1, 1), Token.X);
+            fail("Should not be able to change the board through the map view.");
+        }
+        catch(UnsupportedOperationException uoe) {}
+        
+        // A copy plays on independently of the original
+        TicTacToe copy = game.copy();
+        copy.placeToken(Token.X, 1, 1);
+        assertEquals(Token.X, copy.getToken(1, 1));
+        assertNull(game.getToken(1, 1));
+        assertEquals(Token.X, game.getNextTurn());
+        assertEquals(Token.O, copy.getNextTurn());
+    }
+    
+    @Test
+    public void testIsDrawForced()
+    {
+        TicTacToe game = new TicTacToe(4);
+        game.placeToken(Token.X, 1, 4);
+        game.placeToken(Token.O, 4, 4);
+        game.placeToken(Token.X, 2, 2);
+        game.placeToken(Token.O, 3, 2);
+        game.placeToken(Token.X, 4, 1);
+        game.placeToken(Token.O, 2, 3);
+        game.placeToken(Token.X, 3, 3);
+        assertFalse(game.isDrawForced());
+        game.placeToken(Token.O, 1, 1);
+        // Every row, column and diagonal now holds both tokens
+        assertTrue(game.isDrawForced());
+        assertFalse(game.isBoardFull());
+        assertNull(game.getWinner());
+    }
+    
+    @Test
+    public void testSquare()
+    {
+        assertSame(Square.of(2, 3), Square.of(2, 3));
+        assertEquals(new Square(2, 3), Square.of(2, 3));
+        assertEquals(new Square(2, 3).hashCode(), Square.of(2, 3).hashCode());
+        // Squares on the same anti-diagonal must not share a hash
+        assertFalse(Square.of(1, 3).hashCode() == Square.of(3, 1).hashCode());
+        assertFalse(Square.of(2, 2).hashCode() == Square.of(3, 1).hashCode());
+        // Squares off the shared table are still equal to each other
+        assertEquals(Square.of(1000, 1000), Square.of(1000, 1000));
+    }
+    
+    @Test
+    public void testUndoRedo()
+    {
+        TicTacToe game = new TicTacToe();
+        assertFalse(game.undo());
+        assertNull(game.getLastMove());
+        game.placeToken(Token.X, 1, 1);
+        game.placeToken(Token.O, 2, 1);
+        game.placeToken(Token.X, 1, 2);
+        game.placeToken(Token.O, 2, 2);
+        game.placeToken(Token.X, 1, 3);
+        assertEquals(Token.X, game.getWinner());
+        assertEquals(Square.of(1, 3), game.getLastMove());
+        
+        // Taking back the winning move reopens the game
+        assertTrue(game.undo());
+        assertNull(game.getWinner());
+        assertNull(game.getToken(1, 3));
+        assertEquals(Token.X, game.getNextTurn());
+        assertEquals(4, game.getMoveCount());
+        assertEquals(Square.of(2, 2), game.getLastMove());
+        
+        // ...and playing it again wins again
+        assertTrue(game.redo());
+        assertEquals(Token.X, game.getWinner());
+        assertFalse(game.redo());
+        
+        // A new move after undo drops the undone moves
+        game.undo();
+        game.undo();
+        assertEquals(Token.O, game.getNextTurn());
+        game.placeToken(Token.O, 1, 3);
+        assertFalse(game.redo());
+        assertEquals(Token.X, game.getNextTurn());
+        assertEquals(Token.O, game.getToken(1, 3));
+    }
+    
+    @Test
+    public void testSymmetry()
+    {
+        Symmetry symmetry = Symmetry.forSize(3);
+        
+        // X in any corner with O next to it clockwise is the same position
+        TicTacToe game = new TicTacToe();
+        game.placeToken(Token.X, 1, 1);
+        game.placeToken(Token.O, 1, 2);
+        TicTacToe rotated = new TicTacToe();
+        rotated.placeToken(Token.X, 3, 3);
+        rotated.placeToken(Token.O, 3, 2);
+        byte[] canonical = symmetry.canonicalize(game.getBoard().getCells());
+        assertArrayEquals(canonical, symmetry.canonicalize(rotated.getBoard().getCells()));
+        assertEquals(symmetry.canonicalTransform(game.getBoard()),
+                symmetry.canonicalTransform(game.getCurrentGameBoard()));
+        
+        // Moves carry over to the canonical board and back
+        int transform = symmetry.canonicalTransform(rotated.getBoard());
+        for(int cell=0; cell<9; cell++)
+            assertEquals(cell, symmetry.unmapCell(transform, symmetry.mapCell(transform, cell)));
+        int canonicalCell = symmetry.mapCell(transform, 2*3 + 2);
+        assertEquals(Board.X, canonical[canonicalCell]);
+        
+        // On an empty board every corner is equivalent to the first one
+        byte[] empty = new byte[9];
+        assertEquals(0, symmetry.representative(empty, 8));
+        assertEquals(1, symmetry.representative(empty, 5));
+        assertEquals(4, symmetry.representative(empty, 4));
+    }
+    
+    @Test
+    public void testReset()
+    {
+        TicTacToe game = new TicTacToe();
+        game.placeToken(Token.X, 1, 1);
+        game.placeToken(Token.O, 2, 1);
+        game.placeToken(Token.X, 1, 2);
+        game.placeToken(Token.O, 2, 2);
+        game.placeToken(Token.X, 1, 3);
+        game.reset();
+        assertNull(game.getWinner());
+        assertEquals(0, game.getMoveCount());
+        assertTrue(game.getCurrentGameBoard().isEmpty());
+        assertFalse(game.redo());
+        assertEquals(Token.X, game.getNextTurn());
+    }
+    
+    @Test
+    public void testWinLength()
+    {
+        // Five in a row on a 15x15 board, along the R->L diagonal
+        TicTacToe game = new TicTacToe(15, 5);
+        assertEquals(5, game.getWinLength());
+        for(int i=0; i<4; i++)
+        {
+            game.placeToken(Token.X, 10+i, 8-i);
+            game.placeToken(Token.O, 1, 1+2*i);
+            assertNull(game.getWinner());
+        }
+        game.placeToken(Token.X, 14, 4);
+        assertEquals(Token.X, game.getWinner());
+        
+        // A run broken by the other token doesn't win, even when it's long enough overall
+        TicTacToe game2 = new TicTacToe(7, 4);
+        game2.placeToken(Token.X, 7, 1);
+        game2.placeToken(Token.O, 7, 4);
+        game2.placeToken(Token.X, 7, 2);
+        game2.placeToken(Token.O, 1, 1);
+        game2.placeToken(Token.X, 7, 3);
+        game2.placeToken(Token.O, 1, 2);
+        game2.placeToken(Token.X, 7, 5);
+        game2.placeToken(Token.O, 1, 3);
+        game2.placeToken(Token.X, 7, 6);
+        assertNull(game2.getWinner());
+        game2.placeToken(Token.O, 1, 4);
+        assertEquals(Token.O, game2.getWinner());
+        
+        try
+        {
+            new TicTacToe(3, 4);
+            fail("Should have thrown an exception for a win length longer than the board.");
+        }
+        catch(IllegalArgumentException iae) {}
+    }
+    
+    @Test
+    public void testInfiniteBoard()
+    {
+        // Five in a row across the origin and far from it
+        InfiniteTicTacToe game = new InfiniteTicTacToe(5);
+        for(int i=0; i<4; i++)
+        {
+            game.placeToken(Token.X, -2+i, -2+i);
+            game.placeToken(Token.O, 1000000000, i);
+        }
+        assertNull(game.getWinner());
+        assertEquals(Token.O, game.getToken(1000000000, 3));
+        try
+        {
+            game.placeToken(Token.X, 0, 0);
+            fail("Should have thrown an exception for an occupied square.");
+        }
+        catch(IllegalArgumentException iae) {}
+        game.placeToken(Token.X, 2, 2);
+        assertEquals(Token.X, game.getWinner());
+        assertTrue(game.undo());
+        assertNull(game.getWinner());
+        assertNull(game.getToken(2, 2));
+        assertEquals(new Square(1000000000, 3), game.getLastMove());
+        
+        // Runs don't wrap around the ends of the int range
+        InfiniteTicTacToe edge = new InfiniteTicTacToe(3);
+        edge.placeToken(Token.X, 0, Integer.MAX_VALUE);
+        edge.placeToken(Token.O, 5, 5);
+        edge.placeToken(Token.X, 0, Integer.MIN_VALUE);
+        edge.placeToken(Token.O, 6, 6);
+        edge.placeToken(Token.X, 0, Integer.MIN_VALUE + 1);
+        assertNull(edge.getWinner());
+        
+        // A long game stays at a few bytes per move
+        InfiniteTicTacToe spread = new InfiniteTicTacToe(5);
+        for(int i=0; i<50000; i++)
+            spread.placeToken(spread.getNextTurn(), i * 7919, i % 2 == 0 ? i : -i);
+        assertNull(spread.getWinner());
+        assertTrue(spread.getFootprintBytes() / 50000 < 40);
+        for(int i=0; i<50000; i++)
+            assertTrue(spread.undo());
+        assertEquals(0, spread.getMoveCount());
+        assertNull(spread.getToken(7919, -1));
+    }
+    
+    @Test
+    public void testLatencyHistogram()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        for(long nanos=1; nanos<=1000; nanos++)
+            histogram.record(nanos);
+        histogram.record(5000000000L);
+        assertEquals(1001, histogram.getCount());
+        assertEquals(5000000000L, histogram.getMax());
+        
+        // Within an eighth of the true value
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 500 && median <= 500 + 500/8);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99 >= 990 && p99 <= 990 + 990/8);
+        assertEquals(5000000000L, histogram.getValueAtPercentile(100));
+        
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+    
+    @Test
+    public void testSnapshot()
+    throws Exception
+    {
+        TicTacToe game = new TicTacToe(70);
+        BoardSnapshot empty = game.getSnapshot();
+        game.placeToken(Token.X, 1, 1);
+        game.placeToken(Token.O, 70, 70);
+        BoardSnapshot before = game.getSnapshot();
+        game.placeToken(Token.X, 35, 2);
+        
+        // Earlier snapshots stay as they were
+        assertNull(empty.getToken(1, 1));
+        assertEquals(Token.O, before.getToken(70, 70));
+        assertNull(before.getToken(35, 2));
+        assertEquals(Token.X, before.getNextTurn());
+        BoardSnapshot after = game.getSnapshot();
+        assertEquals(Token.X, after.getToken(35, 2));
+        assertEquals(new Square(35, 2), after.getLastMove());
+        assertEquals(3, after.getMoveCount());
+        
+        game.undo();
+        assertNull(game.getSnapshot().getToken(35, 2));
+        assertEquals(Token.X, after.getToken(35, 2));
+        game.redo();
+        assertEquals(Token.X, game.getSnapshot().getToken(35, 2));
+        game.reset();
+        assertEquals(0, game.getSnapshot().getMoveCount());
+        assertNull(game.getSnapshot().getToken(70, 70));
+        
+        // A replay publishes its snapshot once at the end, and moves after it keep it up to date
+        TicTacToe replayed = new TicTacToe();
+        replayed.applyMoves(new int[] { 4, 0 });
+        replayed.placeToken(Token.X, 3, 3);
+        assertEquals(3, replayed.getSnapshot().getMoveCount());
+        assertEquals(Token.O, replayed.getSnapshot().getToken(1, 1));
+        replayed.undo();
+        assertNull(replayed.getSnapshot().getToken(3, 3));
+        
+        // A reader on another thread always sees a whole move
+        TicTacToe standard = new TicTacToe();
+        Thread player = new Thread(() -> {
+            for(int i=0; i<20000; i++)
+            {
+                standard.reset();
+                while(standard.getWinner() == null && !standard.isBoardFull())
+                {
+                    Square square = standard.getSnapshot().getLastMove();
+                    int cell = square == null ? 0 : ((square.getRow()-1)*3 + square.getColumn()) % 9;
+                    while(standard.getBoard().get(cell) != null)
+                        cell = (cell + 1) % 9;
+                    standard.placeToken(standard.getNextTurn(), cell / 3 + 1, cell % 3 + 1);
+                }
+            }
+        });
+        player.start();
+        while(player.isAlive())
+        {
+            BoardSnapshot snapshot = standard.getSnapshot();
+            int tokens = 0;
+            for(int cell=0; cell<9; cell++)
+                tokens += snapshot.get(cell) == null ? 0 : 1;
+            assertEquals(snapshot.getMoveCount(), tokens);
+        }
+        player.join();
+    }
+    
+    @Test
+    public void testTryPlace()
+    {
+        TicTacToe game = new TicTacToe();
+        assertEquals(MoveStatus.OK, game.tryPlace(2, 2));
+        assertEquals(MoveStatus.OCCUPIED, game.tryPlace(2, 2));
+        assertEquals(MoveStatus.OUT_OF_RANGE, game.tryPlace(0, 2));
+        assertEquals(MoveStatus.WRONG_TURN, game.tryPlace(Token.X, 1, 1));
+        assertEquals(1, game.getMoveCount());
+        assertEquals(MoveStatus.OK, game.tryPlace(Token.O, 1, 1));
+        assertEquals(MoveStatus.OK, game.tryPlace(1, 3));
+        assertEquals(MoveStatus.OK, game.tryPlace(1, 2));
+        assertEquals(MoveStatus.WIN, game.tryPlace(3, 1));
+        assertEquals(MoveStatus.GAME_OVER, game.tryPlace(3, 3));
+        assertEquals(Token.X, game.getWinner());
+        
+        // A whole game in one call, ending in a draw
+        TicTacToe replay = new TicTacToe();
+        assertEquals(MoveStatus.DRAW, replay.applyMoves(new int[] { 4, 0, 8, 2, 1, 7, 6, 5, 3 }));
+        assertEquals(9, replay.getMoveCount());
+        assertEquals(9, replay.getSnapshot().getMoveCount());
+        
+        // Stops at the first move that isn't allowed
+        TicTacToe partial = new TicTacToe();
+        assertEquals(MoveStatus.OCCUPIED, partial.applyMoves(new int[] { 4, 0, 4, 8 }));
+        assertEquals(2, partial.getMoveCount());
+        assertEquals(MoveStatus.OUT_OF_RANGE, partial.applyMoves(new int[] { 9 }));
+        assertEquals(MoveStatus.WIN, partial.applyMoves(new int[] { 8, 2, 6, 3, 7 }));
+        assertEquals(MoveStatus.GAME_OVER, partial.applyMoves(new int[] { 3 }));
+        assertEquals(Token.X, partial.getWinner());
+    }
+    
+    @Test
+    public void testLegalMoves()
+    {
+        TicTacToe game = new TicTacToe(4);
+        SplittableRandom random = new SplittableRandom(1);
+        assertEquals(16, game.getEmptyCount());
+        game.placeToken(Token.X, 1, 1);
+        game.placeToken(Token.O, 4, 4);
+        game.placeToken(Token.X, 2, 3);
+        game.undo();
+        assertEquals(14, game.getEmptyCount());
+        
+        // Every empty cell once, and nothing else
+        boolean[] seen = new boolean[16];
+        game.forEachLegalMove(cell -> {
+            assertNull(game.getBoard().get(cell));
+            assertFalse(seen[cell]);
+            seen[cell] = true;
+        });
+        int count = 0;
+        for(boolean each : seen)
+            count += each ? 1 : 0;
+        assertEquals(14, count);
+        
+        // Random moves fill the board, which ends the game
+        while(!game.isBoardFull() && game.getWinner() == null)
+        {
+            int cell = game.randomLegalMove(random);
+            assertNull(game.getBoard().get(cell));
+            game.placeToken(game.getNextTurn(), cell / 4 + 1, cell % 4 + 1);
+        }
+        assertEquals(16 - game.getMoveCount(), game.getEmptyCount());
+        if(game.isBoardFull())
+            assertEquals(-1, game.randomLegalMove(random));
+        try
+        {
+            game.getNextTurn();
+            fail("Should have thrown an exception once the game was over.");
+        }
+        catch(IllegalStateException ise) {}
+    }
+    
+    @Test
+    public void testHyperBoard()
+    {
+        assertEquals(8, new HyperTicTacToe(3, 2).getLineCount());
+        assertEquals(49, new HyperTicTacToe(3, 3).getLineCount());
+        assertEquals(76, new HyperTicTacToe(4, 3).getLineCount());
+        assertEquals(520, new HyperTicTacToe(4, 4).getLineCount());
+        
+        // X wins Qubic along a space diagonal
+        HyperTicTacToe game = new HyperTicTacToe(4, 3);
+        for(int i=1; i<=3; i++)
+        {
+            game.placeToken(Token.X, i, i, i);
+            game.placeToken(Token.O, 1, 2, i);
+        }
+        assertNull(game.getWinner());
+        game.placeToken(Token.X, 4, 4, 4);
+        assertEquals(Token.X, game.getWinner());
+        assertEquals(Token.X, game.getToken(4, 4, 4));
+        try
+        {
+            game.getNextTurn();
+            fail("Should have thrown an exception once the game was over.");
+        }
+        catch(IllegalStateException ise) {}
+        
+        // Taking back the winning move reopens the game
+        assertTrue(game.undo());
+        assertNull(game.getWinner());
+        assertNull(game.getToken(4, 4, 4));
+        assertEquals(Token.X, game.getNextTurn());
+        try
+        {
+            game.placeToken(Token.X, 1, 2, 3);
+            fail("Should have thrown an exception for an occupied square.");
+        }
+        catch(IllegalArgumentException iae) {}
+        try
+        {
+            game.placeToken(Token.X, 1, 2);
+            fail("Should have thrown an exception for a missing coordinate.");
+        }
+        catch(IllegalArgumentException iae) {}
+        
+        // Two dimensions play just like the ordinary board
+        SplittableRandom random = new SplittableRandom(7);
+        for(int round=0; round<200; round++)
+        {
+            TicTacToe flat = new TicTacToe(3);
+            HyperTicTacToe hyper = new HyperTicTacToe(3, 2);
+            while(!hyper.isBoardFull() && hyper.getWinner() == null)
+            {
+                int cell = flat.randomLegalMove(random);
+                Token token = flat.getNextTurn();
+                assertEquals(token, hyper.getNextTurn());
+                flat.placeToken(token, cell / 3 + 1, cell % 3 + 1);
+                hyper.placeToken(token, cell % 3 + 1, cell / 3 + 1);
+                assertEquals(flat.getWinner(), hyper.getWinner());
+                assertEquals(flat.isBoardFull(), hyper.isBoardFull());
+            }
+        }
+    }
+    
+    @Test
+    public void testThreats()
+    {
+        TicTacToe game = new TicTacToe(3);
+        game.placeToken(Token.X, 1, 1);
+        game.placeToken(Token.O, 2, 2);
+        game.placeToken(Token.X, 1, 3);
+        assertEquals(1, game.findWinningMove(Token.X));
+        assertEquals(1, game.findForcedBlock(Token.O));
+        assertEquals(-1, game.findWinningMove(Token.O));
+        game.placeToken(Token.O, 1, 2);
+        assertEquals(7, game.findWinningMove(Token.O));
+        game.placeToken(Token.X, 3, 2);
+        assertEquals(-1, game.findWinningMove(Token.O));
+        
+        // Random games on a few sizes and win lengths agree with looking at
+        // every run of squares, and taking the moves back leaves nothing behind
+        SplittableRandom random = new SplittableRandom(11);
+        for(int size=1; size<=6; size++)
+        {
+            for(int winLength=1; winLength<=size; winLength++)
+            {
+                game = new TicTacToe(size, winLength);
+                for(int round=0; round<50; round++)
+                {
+                    while(game.getWinner() == null && !game.isBoardFull())
+                    {
+                        int cell = game.randomLegalMove(random);
+                        game.placeToken(game.getNextTurn(), cell / size + 1, cell % size + 1);
+                        for(Token token : Token.values())
+                        {
+                            int wins = 0;
+                            for(int i=0; i<game.getEmptyCount(); i++)
+                            {
+                                boolean win = completesRun(game, game.freeCells[i], token);
+                                assertEquals(win, game.wouldWin(game.freeCells[i], token));
+                                wins += win ? 1 : 0;
+                            }
+                            assertEquals(wins, game.countWinningMoves(token));
+                            int found = game.findWinningMove(token);
+                            assertTrue(found < 0 ? wins == 0 : game.getBoard().get(found) == null && game.wouldWin(found, token));
+                        }
+                        int[] runs = score(game);
+                        assertEquals(runs[0], game.getScore());
+                        assertEquals(game.getWinner() == null && runs[1] == 0, game.isDrawForced());
+                    }
+                    while(game.undo());
+                    assertEquals(0, game.getScore());
+                    assertEquals(winLength > 1, game.findWinningMove(Token.O) < 0);
+                }
+            }
+        }
+        
+        // Shorter runs keep their threats too
+        game = new TicTacToe(5, 3);
+        game.placeToken(Token.X, 3, 2);
+        game.placeToken(Token.O, 1, 1);
+        game.placeToken(Token.X, 3, 3);
+        assertEquals(2, game.countWinningMoves(Token.X));
+        assertEquals(game.findWinningMove(Token.X), game.findForcedBlock(Token.O));
+    }
+    
+    /**
+     * Score a game by looking at every run of squares as long as a winning
+     * run.
+     *
+     * @return The score, and the number of runs not yet holding both tokens.
+     */
+    private static int[] score(TicTacToe game)
+    {
+        int size = game.getBoardSize();
+        int length = game.getWinLength();
+        int[][] steps = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+        int score = 0;
+        int open = 0;
+        for(int[] step : steps)
+        {
+            for(int row=0; row<size; row++)
+            {
+                for(int column=0; column<size; column++)
+                {
+                    int lastRow = row + step[0]*(length-1);
+                    int lastColumn = column + step[1]*(length-1);
+                    if(lastRow >= size || lastColumn < 0 || lastColumn >= size)
+                        continue;
+                    int x = 0;
+                    int o = 0;
+                    for(int i=0; i<length; i++)
+                    {
+                        Token token = game.getToken(row + step[0]*i + 1, column + step[1]*i + 1);
+                        x += token == Token.X ? 1 : 0;
+                        o += token == Token.O ? 1 : 0;
+                    }
+                    score += o == 0 ? x*x : x == 0 ? -o*o : 0;
+                    open += x == 0 || o == 0 ? 1 : 0;
+                }
+            }
+        }
+        return new int[] { score, open };
+    }
 
+    /**
+     * Determine whether a token on the given cell would be part of a
+     * winning run, by counting along the board.
+     */
+    private static boolean completesRun(TicTacToe game, int cell, Token token)
+    {
+        int size = game.getBoardSize();
+        int[][] steps = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+        for(int[] step : steps)
+        {
+            int run = 1;
+            for(int direction=-1; direction<=1; direction+=2)
+            {
+                int row = cell / size + direction*step[0];
+                int column = cell % size + direction*step[1];
+                while(row >= 0 && row < size && column >= 0 && column < size
+                        && game.getToken(row+1, column+1) == token)
+                {
+                    run++;
+                    row += direction*step[0];
+                    column += direction*step[1];
+                }
+            }
+            if(run >= game.getWinLength())
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,462 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plays every player against every other, as both X and O, on each of
+ * several board sizes, and rates them.
+ *
+ * The games are split into small batches on a work-stealing pool, so a slow
+ * pairing doesn't leave threads idle while it finishes. Each worker thread
+ * keeps one board per size and one move policy per player, reused from game
+ * to game. Results go straight into shared striped counters, so threads
+ * never wait on each other to record a game.
+ */
+public class TournamentRunner
+{
+    private static final int BATCH_GAMES = 16; // games a task plays rather than splitting further
+
+    private final List<Player> players;
+    private final int[] boardSizes;
+    private final int gamesPerPairing;
+
+    /**
+     * Create a tournament.
+     *
+     * @param players At least two players.
+     * @param boardSizes Sizes of board to play on.
+     * @param gamesPerPairing Games each player plays as X against each
+     *        other player, on each board size.
+     */
+    public TournamentRunner(List<Player> players, int[] boardSizes, int gamesPerPairing)
+    {
+        if(players.size() < 2)
+            throw new IllegalArgumentException("ERROR: A tournament needs at least 2 players.");
+        if(boardSizes.length == 0)
+            throw new IllegalArgumentException("ERROR: A tournament needs at least 1 board size.");
+        this.players = new ArrayList<Player>(players);
+        this.boardSizes = boardSizes.clone();
+        this.gamesPerPairing = gamesPerPairing;
+    }
+
+    /**
+     * Play the whole tournament.
+     *
+     * @param threads Number of threads to play on.
+     * @param seed Seed for the players' random choices.
+     * @return The results.
+     */
+    public Standings run(int threads, long seed)
+    {
+        int count = players.size();
+        Tally tally = new Tally(count);
+        AtomicLong workerSeeds = new AtomicLong(seed);
+        ThreadLocal<Worker> workers = ThreadLocal.withInitial(
+                () -> new Worker(workerSeeds.getAndAdd(0x9E3779B97F4A7C15L)));
+
+        List<Batch> batches = new ArrayList<Batch>();
+        for(int size : boardSizes)
+        {
+            for(int x=0; x<count; x++)
+            {
+                for(int o=0; o<count; o++)
+                {
+                    if(x != o)
+                        batches.add(new Batch(size, x, o, gamesPerPairing, workers, tally));
+                }
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try
+        {
+            pool.invoke(new RecursiveAction()
+            {
+                @Override
+                protected void compute()
+                {
+                    ForkJoinTask.invokeAll(batches);
+                }
+            });
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        return new Standings(players, tally, System.nanoTime() - start);
+    }
+
+    /**
+     * The boards and policies one thread reuses from game to game.
+     */
+    private class Worker
+    {
+        final SplittableRandom random;
+        final TicTacToe[] games = new TicTacToe[boardSizes.length];
+        final MovePolicy[] policies = new MovePolicy[players.size()];
+
+        Worker(long seed)
+        {
+            this.random = new SplittableRandom(seed);
+        }
+
+        TicTacToe game(int size)
+        {
+            for(int i=0; i<boardSizes.length; i++)
+            {
+                if(boardSizes[i] == size)
+                {
+                    if(games[i] == null)
+                        games[i] = new TicTacToe(size);
+                    games[i].reset();
+                    return games[i];
+                }
+            }
+            throw new IllegalArgumentException(String.format("ERROR: No board of size %d.", size));
+        }
+
+        MovePolicy policy(int player)
+        {
+            if(policies[player] == null)
+                policies[player] = players.get(player).newPolicy();
+            return policies[player];
+        }
+    }
+
+    /**
+     * Some of the games of one player as X against another as O, split in
+     * half until small enough to play.
+     */
+    private static class Batch extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int size;
+        private final int x;
+        private final int o;
+        private final int games;
+        private final ThreadLocal<Worker> workers;
+        private final Tally tally;
+
+        Batch(int size, int x, int o, int games, ThreadLocal<Worker> workers, Tally tally)
+        {
+            this.size = size;
+            this.x = x;
+            this.o = o;
+            this.games = games;
+            this.workers = workers;
+            this.tally = tally;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(games > BATCH_GAMES)
+            {
+                invokeAll(new Batch(size, x, o, games / 2, workers, tally),
+                        new Batch(size, x, o, games - games / 2, workers, tally));
+                return;
+            }
+
+            Worker worker = workers.get();
+            for(int i=0; i<games; i++)
+                play(worker);
+        }
+
+        private void play(Worker worker)
+        {
+            TicTacToe game = worker.game(size);
+            MovePolicy xPolicy = worker.policy(x);
+            MovePolicy oPolicy = worker.policy(o);
+            int forfeit = -1;
+            while(!game.isGameOver && !game.isDrawForced())
+            {
+                int mover = game.getMoveCount() % 2 == 0 ? x : o;
+                long start = System.nanoTime();
+                int cell;
+                try
+                {
+                    cell = (mover == x ? xPolicy : oPolicy).chooseMove(game, worker.random);
+                }
+                catch(RuntimeException re)
+                {
+                    // A player that fails, such as with a book for another
+                    // size of board, loses the game and starts afresh
+                    worker.policies[mover] = null;
+                    forfeit = mover;
+                    break;
+                }
+                tally.moveTimed(mover, System.nanoTime() - start);
+
+                // A player choosing a move that isn't allowed loses the game
+                if(cell < 0 || cell >= size*size || game.getBoard().get(cell) != null)
+                {
+                    forfeit = mover;
+                    break;
+                }
+                game.play(cell);
+            }
+
+            if(forfeit >= 0)
+                tally.gamePlayed(forfeit == x ? o : x, forfeit, false);
+            else if(game.getWinner() == Token.X)
+                tally.gamePlayed(x, o, false);
+            else if(game.getWinner() == Token.O)
+                tally.gamePlayed(o, x, false);
+            else
+                tally.gamePlayed(x, o, true);
+        }
+    }
+
+    /**
+     * Running totals shared by every thread.
+     */
+    private static class Tally
+    {
+        final int count;
+        final LongAdder[] wins; // [winner*count + loser]
+        final LongAdder[] draws; // [x*count + o]
+        final LongAdder[] moves;
+        final LongAdder[] moveNanos;
+
+        Tally(int count)
+        {
+            this.count = count;
+            this.wins = adders(count*count);
+            this.draws = adders(count*count);
+            this.moves = adders(count);
+            this.moveNanos = adders(count);
+        }
+
+        private static LongAdder[] adders(int length)
+        {
+            LongAdder[] adders = new LongAdder[length];
+            for(int i=0; i<length; i++)
+                adders[i] = new LongAdder();
+            return adders;
+        }
+
+        void moveTimed(int player, long nanos)
+        {
+            moves[player].increment();
+            moveNanos[player].add(nanos);
+        }
+
+        void gamePlayed(int first, int second, boolean drawn)
+        {
+            (drawn ? draws : wins)[first*count + second].increment();
+        }
+    }
+
+    /**
+     * Results of a tournament, with each player's rating.
+     */
+    public static class Standings
+    {
+        private static final double MEAN_RATING = 1500;
+
+        private final List<Player> players;
+        private final long[][] wins; // [winner][loser]
+        private final long[][] draws; // between each pair, either way round
+        private final double[] averageMoveNanos;
+        private final double[] ratings;
+        private final long elapsedNanos;
+
+        Standings(List<Player> players, Tally tally, long elapsedNanos)
+        {
+            int count = players.size();
+            this.players = players;
+            this.wins = new long[count][count];
+            this.draws = new long[count][count];
+            this.averageMoveNanos = new double[count];
+            for(int a=0; a<count; a++)
+            {
+                for(int b=0; b<count; b++)
+                {
+                    wins[a][b] = tally.wins[a*count + b].sum();
+                    long drawn = tally.draws[a*count + b].sum();
+                    draws[a][b] += drawn;
+                    draws[b][a] += drawn;
+                }
+                long moves = tally.moves[a].sum();
+                averageMoveNanos[a] = moves == 0 ? 0 : (double)tally.moveNanos[a].sum() / moves;
+            }
+            this.ratings = fitRatings();
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Find the Elo ratings that best explain the results, by climbing the
+         * likelihood one player at a time. Every pairing that played counts
+         * one extra draw, so that a player who won every game still gets a
+         * finite rating.
+         */
+        private double[] fitRatings()
+        {
+            int count = players.size();
+            double[] ratings = new double[count];
+            Arrays.fill(ratings, MEAN_RATING);
+            for(int iteration=0; iteration<2000; iteration++)
+            {
+                for(int a=0; a<count; a++)
+                {
+                    double score = 0;
+                    double expected = 0;
+                    double games = 0;
+                    for(int b=0; b<count; b++)
+                    {
+                        double pairGames = getGames(a, b);
+                        if(a == b || pairGames == 0)
+                            continue;
+                        pairGames++;
+                        score += wins[a][b] + 0.5 * (draws[a][b] + 1);
+                        expected += pairGames / (1 + Math.pow(10, (ratings[b] - ratings[a]) / 400));
+                        games += pairGames;
+                    }
+                    if(games > 0)
+                        ratings[a] += 400 * (score - expected) / games;
+                }
+            }
+
+            // Only the differences mean anything, so center them
+            double mean = 0;
+            for(double rating : ratings)
+                mean += rating / count;
+            for(int a=0; a<count; a++)
+                ratings[a] += MEAN_RATING - mean;
+            return ratings;
+        }
+
+        private long getGames(int a, int b)
+        {
+            return wins[a][b] + wins[b][a] + draws[a][b];
+        }
+
+        public int getPlayerCount()
+        {
+            return players.size();
+        }
+
+        public Player getPlayer(int player)
+        {
+            return players.get(player);
+        }
+
+        public double getRating(int player)
+        {
+            return ratings[player];
+        }
+
+        public long getGames(int player)
+        {
+            long games = 0;
+            for(int b=0; b<players.size(); b++)
+            {
+                if(b != player)
+                    games += getGames(player, b);
+            }
+            return games;
+        }
+
+        public long getWins(int player)
+        {
+            long total = 0;
+            for(long each : wins[player])
+                total += each;
+            return total;
+        }
+
+        public long getDraws(int player)
+        {
+            long total = 0;
+            for(long each : draws[player])
+                total += each;
+            return total;
+        }
+
+        public long getLosses(int player)
+        {
+            return getGames(player) - getWins(player) - getDraws(player);
+        }
+
+        /**
+         * Gets the number of games one player won against another.
+         */
+        public long getWins(int player, int opponent)
+        {
+            return wins[player][opponent];
+        }
+
+        public double getAverageMoveNanos(int player)
+        {
+            return averageMoveNanos[player];
+        }
+
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        /**
+         * Gets a table of the players, best rated first.
+         */
+        @Override
+        public String toString()
+        {
+            List<Integer> order = new ArrayList<Integer>();
+            for(int player=0; player<players.size(); player++)
+                order.add(player);
+            Collections.sort(order, (a, b) -> Double.compare(ratings[b], ratings[a]));
+
+            StringBuilder table = new StringBuilder(String.format("%-20s %6s %8s %7s %7s %7s %10s%n",
+                    "Player", "Elo", "Games", "Win%", "Draw%", "Loss%", "Move(us)"));
+            for(int player : order)
+            {
+                double games = Math.max(1, getGames(player));
+                table.append(String.format("%-20s %6.0f %8d %7.1f %7.1f %7.1f %10.1f%n",
+                        players.get(player).getName(), ratings[player], getGames(player),
+                        100 * getWins(player) / games, 100 * getDraws(player) / games,
+                        100 * getLosses(player) / games, averageMoveNanos[player] / 1000));
+            }
+            return table.toString();
+        }
+    }
+
+    /**
+     * Run a tournament from the command line.
+     * Arguments: games per pairing, board sizes separated by commas, and two
+     * or more players (random, greedy, search:depth or book:file).
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 4)
+        {
+            System.out.println("Usage: TournamentRunner gamesPerPairing size[,size...] player player [player...]");
+            System.out.println("Players: random, greedy, search:depth, book:file");
+            System.exit(1);
+        }
+
+        int games = Integer.parseInt(args[0]);
+        String[] sizeArgs = args[1].split(",");
+        int[] sizes = new int[sizeArgs.length];
+        for(int i=0; i<sizes.length; i++)
+            sizes[i] = Integer.parseInt(sizeArgs[i]);
+        List<Player> players = new ArrayList<Player>();
+        for(int i=2; i<args.length; i++)
+            players.add(Player.of(args[i], SelfPlaySimulator.policy(args[i])));
+
+        Standings standings = new TournamentRunner(players, sizes, games)
+                .run(Runtime.getRuntime().availableProcessors(), System.nanoTime());
+        System.out.print(standings);
+        System.out.println(String.format("Played in %.1fs", standings.getElapsedNanos() / 1e9));
+    }
+}
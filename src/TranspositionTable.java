@@ -0,0 +1,112 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size cache of search results, keyed by the Zobrist hash of a position.
+ *
+ * Each slot holds two longs: the packed result, and the hash XORed with that
+ * result. A slot only matches a probe when the two still agree, so an entry
+ * half-written by another thread reads as a miss instead of a wrong result.
+ * That makes the table safe to share between search threads without locks.
+ * Newer entries simply replace older ones in the same slot.
+ */
+public class TranspositionTable
+{
+    /** The stored score is exact. */
+    public static final int EXACT = 0;
+    /** The stored score is a lower bound: the search failed high. */
+    public static final int LOWER_BOUND = 1;
+    /** The stored score is an upper bound: the search failed low. */
+    public static final int UPPER_BOUND = 2;
+
+    /** Value returned by {@link #probe(long)} when there is no entry. */
+    public static final long MISS = 0;
+
+    private static final long VALID = 1L << 29; // keeps stored entries distinct from MISS
+
+    private final AtomicLongArray slots; // pairs of (hash ^ data, data)
+    private final int mask;
+
+    /**
+     * Create a table with room for at least the given number of entries.
+     * The size is rounded up to a power of two.
+     */
+    public TranspositionTable(int entries)
+    {
+        int capacity = Integer.highestOneBit(Math.max(1, entries - 1)) << 1;
+        this.slots = new AtomicLongArray(capacity * 2);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Gets the number of entries the table can hold.
+     */
+    public int getCapacity()
+    {
+        return mask + 1;
+    }
+
+    /**
+     * Look up a position.
+     *
+     * @return The packed entry, or {@link #MISS}. Unpack it with
+     *         {@link #score(long)}, {@link #depth(long)}, {@link #bound(long)}
+     *         and {@link #move(long)}.
+     */
+    public long probe(long hash)
+    {
+        int slot = ((int)hash & mask) << 1;
+        long data = slots.get(slot + 1);
+        if(data == MISS || (slots.get(slot) ^ data) != hash)
+            return MISS;
+        return data;
+    }
+
+    /**
+     * Store a search result for a position.
+     *
+     * @param score Score from the point of view of the player to move.
+     * @param depth Remaining depth the position was searched to.
+     * @param bound {@link #EXACT}, {@link #LOWER_BOUND} or {@link #UPPER_BOUND}.
+     * @param move Best cell found, or -1 for none.
+     */
+    public void store(long hash, int score, int depth, int bound, int move)
+    {
+        long data = ((long)score << 32)
+                | ((long)bound << 30)
+                | VALID
+                | ((long)Math.min(depth, 0x1FF) << 20)
+                | (move + 1);
+        int slot = ((int)hash & mask) << 1;
+        slots.lazySet(slot, hash ^ data);
+        slots.lazySet(slot + 1, data);
+    }
+
+    /**
+     * Empty the table.
+     */
+    public void clear()
+    {
+        for(int i=0; i<slots.length(); i++)
+            slots.lazySet(i, 0);
+    }
+
+    public static int score(long entry)
+    {
+        return (int)(entry >> 32);
+    }
+
+    public static int bound(long entry)
+    {
+        return (int)(entry >>> 30) & 0x3;
+    }
+
+    public static int depth(long entry)
+    {
+        return (int)(entry >>> 20) & 0x1FF;
+    }
+
+    public static int move(long entry)
+    {
+        return ((int)entry & 0xFFFFF) - 1;
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Random keys for Zobrist hashing of board positions.
+ *
+ * A position's hash is the XOR of the keys of every (cell, token) pair on
+ * the board, so playing or taking back a move changes the hash with a single
+ * XOR. The side to move needs no key of its own, since it follows from the
+ * number of tokens on the board. Keys are fixed per board size, so hashes
+ * from different searches of the same size can share one table.
+ *
+ * Every hash also starts from a salt for its board size and win length, so
+ * positions played under different rules, empty boards included, don't
+ * share hashes even when a table is shared between them.
+ */
+public final class Zobrist
+{
+    private static final ConcurrentHashMap<Integer, long[]> KEYS = new ConcurrentHashMap<Integer, long[]>();
+
+    private Zobrist()
+    {
+    }
+
+    /**
+     * Gets the keys for a board size. The key for a token in a cell is at
+     * index cell*2 + token.ordinal().
+     */
+    public static long[] keys(int boardSize)
+    {
+        return KEYS.computeIfAbsent(boardSize, Zobrist::generate);
+    }
+
+    /**
+     * Gets the hash of an empty board under the given rules.
+     */
+    public static long salt(int boardSize, int winLength)
+    {
+        return new SplittableRandom(0x5A17_0000_0000L + ((long)boardSize << 20) + winLength).nextLong();
+    }
+
+    /**
+     * Computes the hash of a game's current position from scratch.
+     */
+    public static long hash(TicTacToe game)
+    {
+        long[] keys = keys(game.getBoardSize());
+        Board board = game.getBoard();
+        long hash = salt(game.getBoardSize(), game.getWinLength());
+        for(int ply=0; ply<game.getMoveCount(); ply++)
+        {
+            int cell = game.moves[ply];
+            hash ^= keys[cell*2 + board.get(cell).ordinal()];
+        }
+        return hash;
+    }
+
+    private static long[] generate(int boardSize)
+    {
+        SplittableRandom random = new SplittableRandom(0x5EED_0000L + boardSize);
+        long[] keys = new long[boardSize*boardSize*2];
+        for(int i=0; i<keys.length; i++)
+            keys[i] = random.nextLong();
+        return keys;
+    }
+}